@@ -22,13 +22,21 @@ package me.wildn00b.extraauth;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import me.wildn00b.extraauth.api.AuthFuture;
+import me.wildn00b.extraauth.auth.key.HashPool;
 import me.wildn00b.extraauth.command.AuthCommand;
 import me.wildn00b.extraauth.io.Language;
 import me.wildn00b.extraauth.io.PlayerStatusDB;
+import me.wildn00b.extraauth.io.SessionTable;
+import me.wildn00b.extraauth.io.SessionTokens;
 import me.wildn00b.extraauth.io.Settings;
+import me.wildn00b.extraauth.io.Throttle;
 import me.wildn00b.extraauth.io.Vault;
+import me.wildn00b.extraauth.listener.FreezeListener;
 import me.wildn00b.extraauth.listener.PlayerListener;
 
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class ExtraAuth extends JavaPlugin {
@@ -38,17 +46,35 @@ public class ExtraAuth extends JavaPlugin {
   public PlayerStatusDB DB = null;
   public Language Lang = null;
   public Logger Log = Logger.getLogger("Minecraft");
+  public SessionTable Sessions = null;
   public Settings Settings = null;
+  public Throttle Throttle = null;
+  public SessionTokens Tokens = null;
   public Vault Vault = null;
 
   public String Version;
 
+  private final FreezeListener freezeListener = new FreezeListener(this);
+  private boolean freezeRegistered = false;
+
   public ExtraAuth() {
     INSTANCE = this;
   }
 
   @Override
   public void onDisable() {
+    freezeRegistered = false;
+    if (DB != null) {
+      // Hands out resume tokens, so nobody has to authenticate after a restart
+      for (final Player player : getServer().getOnlinePlayers())
+        DB.Disconnect(player);
+      // Leave a compact snapshot and an empty journal behind
+      DB.Save();
+      DB.Close();
+    }
+    if (Tokens != null)
+      Tokens.Save();
+    HashPool.Shutdown();
     Log.log(Level.INFO, Lang._("ExtraAuth.Disable"));
   }
 
@@ -56,8 +82,23 @@ public class ExtraAuth extends JavaPlugin {
   public void onEnable() {
     Settings = new Settings(this);
     Lang = new Language(this);
+    Sessions = new SessionTable(this);
+    Tokens = new SessionTokens(this);
     DB = new PlayerStatusDB(this);
     Vault = new Vault(this);
+    Throttle = new Throttle(this);
+
+    for (final Player player : getServer().getOnlinePlayers())
+      DB.Connecting(player,
+          player.getAddress().getAddress().getHostAddress(), null);
+
+    // Results of authentications that finished off the main thread
+    getServer().getScheduler().runTaskTimer(this, new Runnable() {
+      @Override
+      public void run() {
+        AuthFuture.DeliverCompleted();
+      }
+    }, 1, 1);
 
     getCommand("auth").setExecutor(new AuthCommand(this));
     getServer().getPluginManager().registerEvents(new PlayerListener(this),
@@ -75,8 +116,36 @@ public class ExtraAuth extends JavaPlugin {
     Log.log(Level.INFO, Lang._("ExtraAuth.Enable"));
   }
 
+  /**
+   * Registers the {@link FreezeListener} while at least one online player has to authenticate, and unregisters it when nobody has to. Bukkit then doesn't dispatch move,
+   * damage and similar events to ExtraAuth at all while everyone is authenticated. Can be called from any thread.
+   */
+  public void UpdateFreezeListener() {
+    if (!isEnabled())
+      return;
+
+    if (!getServer().isPrimaryThread()) {
+      getServer().getScheduler().runTask(this, new Runnable() {
+        @Override
+        public void run() {
+          UpdateFreezeListener();
+        }
+      });
+      return;
+    }
+
+    final boolean needed = Sessions != null && Sessions.Unauthed() > 0;
+    if (needed && !freezeRegistered)
+      getServer().getPluginManager().registerEvents(freezeListener, this);
+    else if (!needed && freezeRegistered)
+      HandlerList.unregisterAll(freezeListener);
+    freezeRegistered = needed;
+  }
+
   public void Reload() {
-    Settings = new Settings(this);
+    DB.Save();
+    Settings.Reload();
+    Vault.Invalidate();
     Lang = new Language(this);
   }
 
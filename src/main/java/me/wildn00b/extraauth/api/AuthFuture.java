@@ -0,0 +1,124 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.api;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import me.wildn00b.extraauth.api.event.FailedReason;
+
+/**
+ * The result of an authentication or enabling that may finish on another thread. Callbacks always run on the main thread: right away if the result is already there, otherwise
+ * together with the other results that came in, at the start of the next tick.
+ * 
+ * @author Dan "WildN00b" Printzell
+ * @since 1.2.3
+ */
+public class AuthFuture {
+
+  /**
+   * @since 1.2.3
+   */
+  public interface Callback {
+    /**
+     * Called on the main thread with the result.
+     */
+    public void Done(FailedReason reason);
+  }
+
+  // Completed off the main thread and waiting for DeliverCompleted
+  private static final ConcurrentLinkedQueue<AuthFuture> completed = new ConcurrentLinkedQueue<AuthFuture>();
+
+  /**
+   * @since 1.2.3
+   * @return A future that already has its result, used to adapt synchronous methods.
+   */
+  public static AuthFuture Completed(FailedReason reason) {
+    final AuthFuture future = new AuthFuture();
+    future.result = reason;
+    future.latch.countDown();
+    return future;
+  }
+
+  /**
+   * Runs the callbacks of every future completed since the last call. ExtraAuth calls this once per tick, on the main thread.
+   */
+  public static void DeliverCompleted() {
+    AuthFuture future;
+    while ((future = completed.poll()) != null)
+      future.deliver();
+  }
+
+  // Main thread only
+  private Callback callback = null;
+  private boolean delivered = false;
+  private final CountDownLatch latch = new CountDownLatch(1);
+  private volatile FailedReason result = null;
+
+  /**
+   * Sets the result, from any thread. Only the first call has any effect.
+   * 
+   * @since 1.2.3
+   */
+  public void Complete(FailedReason reason) {
+    synchronized (latch) {
+      if (result != null)
+        return;
+      result = reason;
+    }
+    latch.countDown();
+    completed.add(this);
+  }
+
+  /**
+   * Waits for the result. Never call this on the main thread for a method that completes there, it would wait forever.
+   * 
+   * @since 1.2.3
+   */
+  public FailedReason Get() throws InterruptedException {
+    latch.await();
+    return result;
+  }
+
+  /**
+   * @since 1.2.3
+   */
+  public boolean IsDone() {
+    return result != null;
+  }
+
+  /**
+   * Sets the callback. Must be called on the main thread.
+   * 
+   * @since 1.2.3
+   */
+  public void OnComplete(Callback callback) {
+    this.callback = callback;
+    if (result != null)
+      deliver();
+  }
+
+  private void deliver() {
+    if (delivered || callback == null)
+      return;
+    delivered = true;
+    callback.Done(result);
+  }
+}
@@ -20,6 +20,12 @@
 package me.wildn00b.extraauth.api;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import me.wildn00b.extraauth.auth.key.Key;
 import me.wildn00b.extraauth.auth.onetimekey.OneTimeKey;
@@ -27,8 +33,15 @@ import me.wildn00b.extraauth.auth.totp.TOTPAuth;
 
 public class AuthManager {
 
+  /**
+   * The classes that are instantiated into the registry. Use {@link #Register(AuthMethod)} instead of adding to this.
+   */
   public static ArrayList<Class<? extends AuthMethod>> Methods = new ArrayList<Class<? extends AuthMethod>>();
 
+  private static final HashSet<Class<? extends AuthMethod>> instantiated = new HashSet<Class<? extends AuthMethod>>();
+  private static final CopyOnWriteArrayList<AuthMethod> ordered = new CopyOnWriteArrayList<AuthMethod>();
+  private static final ConcurrentHashMap<String, AuthMethod> registry = new ConcurrentHashMap<String, AuthMethod>();
+
   static {
     Methods.add(TOTPAuth.class);
     Methods.add(Key.class);
@@ -36,25 +49,79 @@ public class AuthManager {
   }
 
   /**
-   * Returns a instance of the AuthMethod, Null if it can't it.
+   * Returns the shared instance of the AuthMethod, Null if it can't find it.
    * 
    * @param name
-   *          the method name
+   *          the method name, case-insensitive
    * @return The instance
    */
   public static AuthMethod GetAuthMethod(String name) {
-    try {
-      for (final Class<? extends AuthMethod> item : Methods) {
-        AuthMethod method;
-
-        method = item.newInstance();
-
-        if (method.GetName().equalsIgnoreCase(name))
-          return method;
-      }
-    } catch (final Exception e) {
-      e.printStackTrace();
-    }
-    return null;
+    if (name == null)
+      return null;
+
+    AuthMethod method = registry.get(key(name));
+    if (method == null && instantiateMethods())
+      method = registry.get(key(name));
+    return method;
+  }
+
+  /**
+   * @since 1.2.3
+   * @return All the registered authentication methods, in the order they were registered.
+   */
+  public static Collection<AuthMethod> GetAuthMethods() {
+    instantiateMethods();
+    return Collections.unmodifiableList(ordered);
+  }
+
+  /**
+   * Registers an authentication method, replacing any method with the same name. The instance will be shared by every account using it.
+   * 
+   * @since 1.2.3
+   * @param method
+   *          The method
+   */
+  public static void Register(AuthMethod method) {
+    final AuthMethod old = registry.put(key(method.GetName()), method);
+    if (old != null)
+      ordered.remove(old);
+    ordered.add(method);
+  }
+
+  /**
+   * Removes an authentication method from the registry.
+   * 
+   * @since 1.2.3
+   * @param name
+   *          the method name, case-insensitive
+   * @return The removed method, Null if it wasn't registered.
+   */
+  public static AuthMethod Unregister(String name) {
+    final AuthMethod old = registry.remove(key(name));
+    if (old != null)
+      ordered.remove(old);
+    return old;
+  }
+
+  /**
+   * Creates the single instance of every class in {@link #Methods} that doesn't have one yet.
+   * 
+   * @return If any new method was registered.
+   */
+  private static synchronized boolean instantiateMethods() {
+    boolean added = false;
+    for (final Class<? extends AuthMethod> item : Methods)
+      if (instantiated.add(item))
+        try {
+          Register(item.newInstance());
+          added = true;
+        } catch (final Exception e) {
+          e.printStackTrace();
+        }
+    return added;
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ENGLISH);
   }
 }
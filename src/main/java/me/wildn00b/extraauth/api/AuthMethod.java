@@ -21,6 +21,8 @@ package me.wildn00b.extraauth.api;
 
 import me.wildn00b.extraauth.api.event.FailedReason;
 
+import org.bukkit.entity.Player;
+
 /**
  * The interface for implention a authentication method
  * 
@@ -47,12 +49,28 @@ public abstract class AuthMethod {
   public abstract FailedReason Authenticate(PlayerInformation information,
       Object... args);
 
+  /**
+   * The asynchronous version of {@link #Authenticate(PlayerInformation, Object...)}, which is what ExtraAuth calls. The default just calls Authenticate. Override it when
+   * checking the key needs I/O or heavy work, do that work on another thread and complete the future from there.
+   * 
+   * @since 1.2.3
+   * @param information
+   *          The player information.
+   * @param args
+   *          The args
+   * @return The future result.
+   */
+  public AuthFuture AuthenticateAsync(PlayerInformation information,
+      Object... args) {
+    return AuthFuture.Completed(Authenticate(information, args));
+  }
+
   /**
    * Returns the help line, like "<KEY> - Authenticates with the key to your account." or "- Enabling a TOTP authentication on your account. (Uses the Google Authenticator app)"
    * 
    * @since 1.2.0
-   * @param The
-   *          language
+   * @param language
+   *          The language bundle of the player reading the help, pass it on to {@link me.wildn00b.extraauth.io.Language#_(String, String)}
    * @return The help line.
    */
   public abstract String GetHelpLine(String language);
@@ -68,12 +86,32 @@ public abstract class AuthMethod {
    * 
    * @since 1.2.0
    * @see GetHelpLine
-   * @param The
-   *          language
+   * @param language
+   *          The language bundle of the player reading the help
    * @return The help line.
    */
   public abstract String GetOtherHelpLine(String language);
 
+  /**
+   * Called after the authentication was disabled on an account, to forget anything kept about it. The default does nothing.
+   * 
+   * @since 1.2.3
+   * @param player
+   *          The player name, the account no longer exists
+   */
+  public void OnDisable(String player) {
+  }
+
+  /**
+   * Called when a player using this authentication leaves the server. The default does nothing.
+   * 
+   * @since 1.2.3
+   * @param player
+   *          The player
+   */
+  public void OnLogout(Player player) {
+  }
+
   /**
    * Will be called when the authentication was enabled
    * 
@@ -85,4 +123,19 @@ public abstract class AuthMethod {
    */
   public abstract FailedReason OnEnable(PlayerInformation information,
       Object... args);
+
+  /**
+   * The asynchronous version of {@link #OnEnable(PlayerInformation, Object...)}. The default just calls OnEnable.
+   * 
+   * @since 1.2.3
+   * @param information
+   *          The player information.
+   * @param args
+   *          The args
+   * @return The future result.
+   */
+  public AuthFuture OnEnableAsync(PlayerInformation information,
+      Object... args) {
+    return AuthFuture.Completed(OnEnable(information, args));
+  }
 }
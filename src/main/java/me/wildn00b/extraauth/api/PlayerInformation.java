@@ -51,7 +51,7 @@ public class PlayerInformation {
    * @return Returns if the player is authenticated.
    */
   public boolean getAuthed() {
-    return info.Authed;
+    return ExtraAuth.INSTANCE.DB.IsAuth(info.Player);
   }
 
   /**
@@ -111,7 +111,7 @@ public class PlayerInformation {
    *          The value.
    */
   public void setAuthed(boolean authed) {
-    info.Authed = authed;
+    ExtraAuth.INSTANCE.Sessions.SetAuthed(info.Player, authed);
   }
 
   /**
@@ -124,6 +124,7 @@ public class PlayerInformation {
    */
   public void setLastOnline(long lastOnline) {
     info.LastOnline = lastOnline;
+    ExtraAuth.INSTANCE.DB.Update(info);
   }
 
   /**
@@ -135,5 +136,6 @@ public class PlayerInformation {
    */
   public void setPrivateKey(String privateKey) {
     info.PrivateKey = privateKey;
+    ExtraAuth.INSTANCE.DB.Update(info);
   }
 }
@@ -26,5 +26,10 @@ package me.wildn00b.extraauth.api.event;
  * @since 1.0.0
  */
 public enum FailedReason {
-  ALREADY_AUTHED, ALREADY_REGISTERED, CANCELED, CONFIG_BLOCK, INVALID_ARGS, INVALID_METHOD, NEED_TO_AUTHENTICATE, NOT_REGISTERED, SUCCESSFULL, UNKNOWN, URL_FAILED, WRONG_KEY
+  ALREADY_AUTHED, ALREADY_REGISTERED, BUSY, CANCELED, CONFIG_BLOCK, INVALID_ARGS, INVALID_METHOD, NEED_TO_AUTHENTICATE, NOT_REGISTERED, SUCCESSFULL, THROTTLED, UNKNOWN,
+  /**
+   * @deprecated No longer produced, enabling TOTP doesn't create a URL any more.
+   */
+  @Deprecated
+  URL_FAILED, WRONG_KEY
 }
@@ -0,0 +1,87 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.auth.key;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed pool, one thread per core, for the slow key hashing. The queue is bounded, when it's full new work is refused instead of piling up.
+ */
+public class HashPool {
+
+  private static ThreadPoolExecutor executor = null;
+  private static int limit = 0;
+
+  /**
+   * @return How many hashing jobs are waiting for a thread.
+   */
+  public static synchronized int GetQueueDepth() {
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  public static synchronized void Shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Queues a job.
+   * 
+   * @param queueLimit
+   *          How many jobs may wait. When it changes, as on reload, a new pool is started and the old one finishes what it has queued
+   * @return False if the queue is full.
+   */
+  public static synchronized boolean Submit(Runnable job, int queueLimit) {
+    queueLimit = Math.max(1, queueLimit);
+    if (executor != null && limit != queueLimit)
+      Shutdown();
+    if (executor == null) {
+      limit = queueLimit;
+      final int threads = Runtime.getRuntime().availableProcessors();
+      executor = new ThreadPoolExecutor(threads, threads, 0,
+          TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueLimit),
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              final Thread thread = new Thread(r, "ExtraAuth-KeyHash-"
+                  + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+
+    try {
+      executor.execute(job);
+      return true;
+    } catch (final RejectedExecutionException e) {
+      return false;
+    }
+  }
+}
@@ -19,11 +19,19 @@
 
 package me.wildn00b.extraauth.auth.key;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
 import me.wildn00b.extraauth.ExtraAuth;
+import me.wildn00b.extraauth.api.AuthFuture;
 import me.wildn00b.extraauth.api.AuthMethod;
 import me.wildn00b.extraauth.api.PlayerInformation;
 import me.wildn00b.extraauth.api.event.FailedReason;
 
+/**
+ * Keys are stored as {@link KeyHash} hashes. Hashing is slow on purpose, so the async versions do it on the {@link HashPool}. Keys saved in plaintext by older versions
+ * still work, and are hashed the next time the player authenticates.
+ */
 public class Key extends AuthMethod {
 
   @Override
@@ -31,27 +39,61 @@ public class Key extends AuthMethod {
     return true;
   }
 
+  /**
+   * Checks the key on the {@link HashPool} and waits for it, which can hold up the calling thread for a while.
+   * 
+   * @deprecated Use {@link #AuthenticateAsync(PlayerInformation, Object...)}, which doesn't block.
+   */
+  @Deprecated
   @Override
-  public FailedReason Authenticate(PlayerInformation information,
+  public FailedReason Authenticate(final PlayerInformation information,
       Object... args) {
-    if (args.length > 0) {
-      String key = (String) args[0];
+    if (args.length == 0)
+      return FailedReason.INVALID_ARGS;
 
-      for (int i = 1; i < args.length; i++)
-        key += " " + (String) args[1];
+    final String key = join(args);
+    final FailedReason ret = await(new Callable<FailedReason>() {
+      @Override
+      public FailedReason call() {
+        return verify(information, key);
+      }
+    });
+    if (ret == FailedReason.SUCCESSFULL)
+      information.setAuthed(true);
+    return ret;
+  }
 
-      if (key.equals(information.getPrivateKey())) {
-        information.setAuthed(true);
-        return FailedReason.SUCCESSFULL;
-      } else
-        return FailedReason.WRONG_KEY;
-    } else
-      return FailedReason.INVALID_ARGS;
+  @Override
+  public AuthFuture AuthenticateAsync(final PlayerInformation information,
+      Object... args) {
+    if (args.length == 0)
+      return AuthFuture.Completed(FailedReason.INVALID_ARGS);
+
+    final String key = join(args);
+    final AuthFuture verified = new AuthFuture();
+    if (!submit(new Runnable() {
+      @Override
+      public void run() {
+        verified.Complete(verify(information, key));
+      }
+    }))
+      return AuthFuture.Completed(FailedReason.BUSY);
+
+    final AuthFuture result = new AuthFuture();
+    verified.OnComplete(new AuthFuture.Callback() {
+      @Override
+      public void Done(FailedReason reason) {
+        if (reason == FailedReason.SUCCESSFULL)
+          information.setAuthed(true);
+        result.Complete(reason);
+      }
+    });
+    return result;
   }
 
   @Override
   public String GetHelpLine(String language) {
-    return ExtraAuth.INSTANCE.Lang._("Command.Enable.Key.Help");
+    return ExtraAuth.INSTANCE.Lang._(language, "Command.Enable.Key.Help");
   }
 
   @Override
@@ -61,22 +103,112 @@ public class Key extends AuthMethod {
 
   @Override
   public String GetOtherHelpLine(String language) {
-    return ExtraAuth.INSTANCE.Lang._("Command.Enable.Key.Other.Help");
+    return ExtraAuth.INSTANCE.Lang._(language, "Command.Enable.Key.Other.Help");
   }
 
+  /**
+   * Hashes the key on the {@link HashPool} and waits for it, which can hold up the calling thread for a while.
+   * 
+   * @deprecated Use {@link #OnEnableAsync(PlayerInformation, Object...)}, which doesn't block.
+   */
+  @Deprecated
   @Override
-  public FailedReason OnEnable(PlayerInformation information, Object... args) {
-    if (args.length > 0) {
-      String key = (String) args[0];
-
-      for (int i = 1; i < args.length; i++)
-        key += " " + (String) args[1];
+  public FailedReason OnEnable(final PlayerInformation information,
+      Object... args) {
+    if (args.length == 0)
+      return FailedReason.INVALID_ARGS;
 
-      information.setPrivateKey(key);
+    final String key = join(args);
+    final FailedReason ret = await(new Callable<FailedReason>() {
+      @Override
+      public FailedReason call() {
+        return store(information, key);
+      }
+    });
+    if (ret == FailedReason.SUCCESSFULL)
       information.setAuthed(true);
+    return ret;
+  }
+
+  @Override
+  public AuthFuture OnEnableAsync(final PlayerInformation information,
+      Object... args) {
+    if (args.length == 0)
+      return AuthFuture.Completed(FailedReason.INVALID_ARGS);
+
+    final String key = join(args);
+    final AuthFuture stored = new AuthFuture();
+    if (!submit(new Runnable() {
+      @Override
+      public void run() {
+        stored.Complete(store(information, key));
+      }
+    }))
+      return AuthFuture.Completed(FailedReason.BUSY);
+
+    final AuthFuture result = new AuthFuture();
+    stored.OnComplete(new AuthFuture.Callback() {
+      @Override
+      public void Done(FailedReason reason) {
+        if (reason == FailedReason.SUCCESSFULL)
+          information.setAuthed(true);
+        result.Complete(reason);
+      }
+    });
+    return result;
+  }
+
+  // Runs a job on the pool and waits for it, for the synchronous methods
+  private FailedReason await(Callable<FailedReason> job) {
+    final FutureTask<FailedReason> task = new FutureTask<FailedReason>(job);
+    if (!submit(task))
+      return FailedReason.BUSY;
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return FailedReason.UNKNOWN;
+    } catch (final Exception e) {
+      e.printStackTrace();
+      return FailedReason.UNKNOWN;
+    }
+  }
+
+  private String join(Object... args) {
+    String key = (String) args[0];
+
+    for (int i = 1; i < args.length; i++)
+      key += " " + (String) args[i];
+    return key;
+  }
+
+  private FailedReason store(PlayerInformation information, String key) {
+    try {
+      information.setPrivateKey(KeyHash.Hash(key,
+          ExtraAuth.INSTANCE.Settings.Get().KeyHashIterations));
       return FailedReason.SUCCESSFULL;
-    } else
-      return FailedReason.INVALID_ARGS;
+    } catch (final Exception e) {
+      e.printStackTrace();
+      return FailedReason.UNKNOWN;
+    }
+  }
+
+  private boolean submit(Runnable job) {
+    return HashPool.Submit(job,
+        ExtraAuth.INSTANCE.Settings.Get().KeyHashQueueLimit);
   }
 
+  private FailedReason verify(PlayerInformation information, String key) {
+    final String stored = information.getPrivateKey();
+    try {
+      if (!KeyHash.Verify(key, stored))
+        return FailedReason.WRONG_KEY;
+      if (!KeyHash.IsHashed(stored))
+        store(information, key);
+      return FailedReason.SUCCESSFULL;
+    } catch (final Exception e) {
+      e.printStackTrace();
+      return FailedReason.UNKNOWN;
+    }
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.auth.key;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 hashes for stored keys, in the format pbkdf2$VERSION$ITERATIONS$SALT$HASH with the salt and hash in hex. Anything else is treated as an old plaintext key.
+ */
+public class KeyHash {
+
+  private static final String PREFIX = "pbkdf2$";
+  private static final int SALT_LENGTH = 16;
+  private static final int VERSION = 1;
+  private static final int HASH_LENGTH = 20;
+
+  private static final SecureRandom random = new SecureRandom();
+
+  /**
+   * Hashes a key with a new random salt. Takes milliseconds, so don't call it on the main thread.
+   */
+  public static String Hash(String key, int iterations) throws Exception {
+    final byte[] salt = new byte[SALT_LENGTH];
+    synchronized (random) {
+      random.nextBytes(salt);
+    }
+    return PREFIX + VERSION + "$" + iterations + "$" + hex(salt) + "$"
+        + hex(pbkdf2(key, salt, iterations));
+  }
+
+  public static boolean IsHashed(String stored) {
+    return stored != null && stored.startsWith(PREFIX);
+  }
+
+  /**
+   * Checks a key against a stored hash, or against an old plaintext key. Both compare in constant time.
+   */
+  public static boolean Verify(String key, String stored) throws Exception {
+    if (stored == null)
+      return false;
+    if (!IsHashed(stored))
+      return MessageDigest.isEqual(key.getBytes("UTF-8"),
+          stored.getBytes("UTF-8"));
+
+    final String[] parts = stored.split("\\$");
+    if (parts.length != 5 || Integer.parseInt(parts[1]) != VERSION)
+      throw new Exception("Unknown key hash format");
+
+    final byte[] expected = unhex(parts[4]);
+    return MessageDigest.isEqual(
+        pbkdf2(key, unhex(parts[3]), Integer.parseInt(parts[2])), expected);
+  }
+
+  private static String hex(byte[] bytes) {
+    final StringBuilder out = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      out.append(Character.forDigit((b >> 4) & 0xf, 16));
+      out.append(Character.forDigit(b & 0xf, 16));
+    }
+    return out.toString();
+  }
+
+  private static byte[] pbkdf2(String key, byte[] salt, int iterations)
+      throws Exception {
+    final PBEKeySpec spec = new PBEKeySpec(key.toCharArray(), salt,
+        iterations, HASH_LENGTH * 8);
+    try {
+      return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1")
+          .generateSecret(spec).getEncoded();
+    } finally {
+      spec.clearPassword();
+    }
+  }
+
+  private static byte[] unhex(String hex) {
+    final byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+    return bytes;
+  }
+}
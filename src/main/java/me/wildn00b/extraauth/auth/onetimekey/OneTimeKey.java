@@ -52,7 +52,7 @@ public class OneTimeKey extends AuthMethod {
 
   @Override
   public String GetHelpLine(String language) {
-    return ExtraAuth.INSTANCE.Lang._("Command.Enable.OneTimeKey.Help");
+    return ExtraAuth.INSTANCE.Lang._(language, "Command.Enable.OneTimeKey.Help");
   }
 
   @Override
@@ -62,7 +62,7 @@ public class OneTimeKey extends AuthMethod {
 
   @Override
   public String GetOtherHelpLine(String language) {
-    return ExtraAuth.INSTANCE.Lang._("Command.Enable.OneTimeKey.Other.Help");
+    return ExtraAuth.INSTANCE.Lang._(language, "Command.Enable.OneTimeKey.Other.Help");
   }
 
   @Override
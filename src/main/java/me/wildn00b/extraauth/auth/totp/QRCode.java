@@ -0,0 +1,415 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.auth.totp;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A small QR code encoder, byte mode with error correction level M, for versions 1 to 10 (up to 213 bytes). That covers any otpauth:// URI, so provisioning doesn't need a web service.
+ */
+public class QRCode {
+
+  private static final int MAX_VERSION = 10;
+
+  // Error correction level M, indexed by version
+  private static final int[] ECC_PER_BLOCK = { -1, 10, 16, 26, 18, 24, 16, 18,
+      22, 22, 26 };
+  private static final int[] NUM_BLOCKS = { -1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5 };
+
+  /**
+   * Encodes the text as UTF-8 in the smallest version that fits.
+   * 
+   * @param text
+   *          The text to encode
+   * @return The modules as [y][x], true is dark. The quiet zone isn't included.
+   * @throws IllegalArgumentException
+   *           If the text is too long
+   */
+  public static boolean[][] Encode(String text) {
+    byte[] data;
+    try {
+      data = text.getBytes("UTF-8");
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+
+    int version = 1;
+    while (capacity(version) * 8 < 4 + (version < 10 ? 8 : 16) + data.length
+        * 8)
+      if (++version > MAX_VERSION)
+        throw new IllegalArgumentException("Text too long for a QR code: "
+            + data.length + " bytes");
+
+    return new QRCode(version, codewords(version, data)).best();
+  }
+
+  // Number of data codewords, without the error correction
+  private static int capacity(int version) {
+    return rawModules(version) / 8 - ECC_PER_BLOCK[version]
+        * NUM_BLOCKS[version];
+  }
+
+  private static byte[] codewords(int version, byte[] data) {
+    final int capacity = capacity(version);
+    final byte[] out = new byte[capacity];
+    int bit = 0;
+
+    bit = put(out, bit, 0x4, 4);
+    bit = put(out, bit, data.length, version < 10 ? 8 : 16);
+    for (final byte b : data)
+      bit = put(out, bit, b & 0xff, 8);
+    // Terminator, then pad to a whole byte, then the alternating pad bytes
+    bit = Math.min(bit + 4, capacity * 8);
+    for (int i = (bit + 7) / 8, pad = 0xec; i < capacity; i++, pad ^= 0xec ^ 0x11)
+      out[i] = (byte) pad;
+
+    return interleave(version, out);
+  }
+
+  private static int put(byte[] out, int bit, int value, int length) {
+    for (int i = length - 1; i >= 0; i--, bit++)
+      if ((value >>> i & 1) != 0)
+        out[bit >>> 3] |= 0x80 >>> (bit & 7);
+    return bit;
+  }
+
+  private static byte[] interleave(int version, byte[] data) {
+    final int numBlocks = NUM_BLOCKS[version];
+    final int eccLength = ECC_PER_BLOCK[version];
+    final int raw = rawModules(version) / 8;
+    final int numShortBlocks = numBlocks - raw % numBlocks;
+    final int shortBlockLength = raw / numBlocks;
+    final byte[] divisor = divisor(eccLength);
+
+    final byte[][] blocks = new byte[numBlocks][];
+    for (int i = 0, k = 0; i < numBlocks; i++) {
+      final int length = shortBlockLength - eccLength
+          + (i < numShortBlocks ? 0 : 1);
+      final byte[] block = new byte[shortBlockLength + 1];
+      System.arraycopy(data, k, block, 0, length);
+      k += length;
+      final byte[] ecc = remainder(block, length, divisor);
+      System.arraycopy(ecc, 0, block, block.length - eccLength, eccLength);
+      blocks[i] = block;
+    }
+
+    // Short blocks have a hole one byte before their error correction
+    final byte[] out = new byte[raw];
+    int n = 0;
+    for (int i = 0; i <= shortBlockLength; i++)
+      for (int j = 0; j < numBlocks; j++)
+        if (i != shortBlockLength - eccLength || j >= numShortBlocks)
+          out[n++] = blocks[j][i];
+    return out;
+  }
+
+  // Reed-Solomon generator polynomial, without the leading term
+  private static byte[] divisor(int degree) {
+    final byte[] result = new byte[degree];
+    result[degree - 1] = 1;
+    int root = 1;
+    for (int i = 0; i < degree; i++) {
+      for (int j = 0; j < degree; j++) {
+        result[j] = (byte) multiply(result[j] & 0xff, root);
+        if (j + 1 < degree)
+          result[j] ^= result[j + 1];
+      }
+      root = multiply(root, 0x02);
+    }
+    return result;
+  }
+
+  private static byte[] remainder(byte[] data, int length, byte[] divisor) {
+    final byte[] result = new byte[divisor.length];
+    for (int i = 0; i < length; i++) {
+      final int factor = (data[i] ^ result[0]) & 0xff;
+      System.arraycopy(result, 1, result, 0, result.length - 1);
+      result[result.length - 1] = 0;
+      for (int j = 0; j < result.length; j++)
+        result[j] ^= multiply(divisor[j] & 0xff, factor);
+    }
+    return result;
+  }
+
+  // Multiplication in GF(2^8) modulo x^8 + x^4 + x^3 + x^2 + 1
+  private static int multiply(int x, int y) {
+    int z = 0;
+    for (int i = 7; i >= 0; i--) {
+      z = (z << 1) ^ ((z >>> 7) * 0x11d);
+      z ^= ((y >>> i) & 1) * x;
+    }
+    return z;
+  }
+
+  // Modules left for data and error correction after the function patterns
+  private static int rawModules(int version) {
+    int result = (16 * version + 128) * version + 64;
+    if (version >= 2) {
+      final int numAlign = version / 7 + 2;
+      result -= (25 * numAlign - 10) * numAlign - 55;
+      if (version >= 7)
+        result -= 36;
+    }
+    return result;
+  }
+
+  private final byte[] codewords;
+  private final boolean[][] function;
+  private final boolean[][] modules;
+  private final int size;
+  private final int version;
+
+  private QRCode(int version, byte[] codewords) {
+    this.version = version;
+    this.codewords = codewords;
+    size = version * 4 + 17;
+    modules = new boolean[size][size];
+    function = new boolean[size][size];
+  }
+
+  // Draws the symbol with every mask and keeps the one with the lowest penalty
+  private boolean[][] best() {
+    drawFunctionPatterns();
+    drawCodewords();
+
+    int bestMask = 0;
+    int bestPenalty = Integer.MAX_VALUE;
+    for (int mask = 0; mask < 8; mask++) {
+      applyMask(mask);
+      drawFormat(mask);
+      final int penalty = penalty();
+      if (penalty < bestPenalty) {
+        bestMask = mask;
+        bestPenalty = penalty;
+      }
+      applyMask(mask);
+    }
+
+    applyMask(bestMask);
+    drawFormat(bestMask);
+    return modules;
+  }
+
+  private void applyMask(int mask) {
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++) {
+        if (function[y][x])
+          continue;
+        boolean invert;
+        switch (mask) {
+        case 0:
+          invert = (x + y) % 2 == 0;
+          break;
+        case 1:
+          invert = y % 2 == 0;
+          break;
+        case 2:
+          invert = x % 3 == 0;
+          break;
+        case 3:
+          invert = (x + y) % 3 == 0;
+          break;
+        case 4:
+          invert = (x / 3 + y / 2) % 2 == 0;
+          break;
+        case 5:
+          invert = x * y % 2 + x * y % 3 == 0;
+          break;
+        case 6:
+          invert = (x * y % 2 + x * y % 3) % 2 == 0;
+          break;
+        default:
+          invert = ((x + y) % 2 + x * y % 3) % 2 == 0;
+          break;
+        }
+        modules[y][x] ^= invert;
+      }
+  }
+
+  private void drawAlignment(int cx, int cy) {
+    for (int dy = -2; dy <= 2; dy++)
+      for (int dx = -2; dx <= 2; dx++)
+        set(cx + dx, cy + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+  }
+
+  private void drawCodewords() {
+    int i = 0;
+    for (int right = size - 1; right >= 1; right -= 2) {
+      if (right == 6)
+        right = 5;
+      final boolean upward = ((right + 1) & 2) == 0;
+      for (int vert = 0; vert < size; vert++)
+        for (int j = 0; j < 2; j++) {
+          final int x = right - j;
+          final int y = upward ? size - 1 - vert : vert;
+          if (!function[y][x] && i < codewords.length * 8) {
+            modules[y][x] = (codewords[i >>> 3] >>> (7 - (i & 7)) & 1) != 0;
+            i++;
+          }
+        }
+    }
+  }
+
+  private void drawFinder(int cx, int cy) {
+    for (int dy = -4; dy <= 4; dy++)
+      for (int dx = -4; dx <= 4; dx++) {
+        final int x = cx + dx;
+        final int y = cy + dy;
+        if (x < 0 || x >= size || y < 0 || y >= size)
+          continue;
+        final int distance = Math.max(Math.abs(dx), Math.abs(dy));
+        set(x, y, distance != 2 && distance != 4);
+      }
+  }
+
+  // Level M is 00, so only the mask goes into the data bits
+  private void drawFormat(int mask) {
+    final int data = mask;
+    int rem = data;
+    for (int i = 0; i < 10; i++)
+      rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+    final int bits = (data << 10 | rem) ^ 0x5412;
+
+    for (int i = 0; i <= 5; i++)
+      set(8, i, bit(bits, i));
+    set(8, 7, bit(bits, 6));
+    set(8, 8, bit(bits, 7));
+    set(7, 8, bit(bits, 8));
+    for (int i = 9; i < 15; i++)
+      set(14 - i, 8, bit(bits, i));
+
+    for (int i = 0; i < 8; i++)
+      set(size - 1 - i, 8, bit(bits, i));
+    for (int i = 8; i < 15; i++)
+      set(8, size - 15 + i, bit(bits, i));
+    set(8, size - 8, true);
+  }
+
+  private void drawFunctionPatterns() {
+    for (int i = 0; i < size; i++) {
+      set(6, i, i % 2 == 0);
+      set(i, 6, i % 2 == 0);
+    }
+
+    drawFinder(3, 3);
+    drawFinder(size - 4, 3);
+    drawFinder(3, size - 4);
+
+    final int[] align = alignmentPositions();
+    final int last = align.length - 1;
+    for (int i = 0; i <= last; i++)
+      for (int j = 0; j <= last; j++)
+        if (!(i == 0 && j == 0 || i == 0 && j == last || i == last && j == 0))
+          drawAlignment(align[i], align[j]);
+
+    // Reserve the format areas, they're drawn for real once the mask is known
+    drawFormat(0);
+    drawVersion();
+  }
+
+  private void drawVersion() {
+    if (version < 7)
+      return;
+
+    int rem = version;
+    for (int i = 0; i < 12; i++)
+      rem = (rem << 1) ^ ((rem >>> 11) * 0x1f25);
+    final int bits = version << 12 | rem;
+
+    for (int i = 0; i < 18; i++) {
+      final int a = size - 11 + i % 3;
+      final int b = i / 3;
+      set(a, b, bit(bits, i));
+      set(b, a, bit(bits, i));
+    }
+  }
+
+  private int[] alignmentPositions() {
+    if (version == 1)
+      return new int[0];
+    final int numAlign = version / 7 + 2;
+    final int step = (version * 4 + numAlign * 2 + 1) / (numAlign * 2 - 2) * 2;
+    final int[] result = new int[numAlign];
+    result[0] = 6;
+    for (int i = numAlign - 1, pos = size - 7; i >= 1; i--, pos -= step)
+      result[i] = pos;
+    return result;
+  }
+
+  private boolean bit(int bits, int i) {
+    return (bits >>> i & 1) != 0;
+  }
+
+  // The penalty rules N1 to N4 from ISO/IEC 18004
+  private int penalty() {
+    int result = 0;
+    int dark = 0;
+    final boolean[] line = new boolean[size];
+
+    for (int pass = 0; pass < 2; pass++)
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++)
+          line[j] = pass == 0 ? modules[i][j] : modules[j][i];
+
+        int run = 1;
+        for (int j = 1; j <= size; j++)
+          if (j < size && line[j] == line[j - 1])
+            run++;
+          else {
+            if (run >= 5)
+              result += run - 2;
+            run = 1;
+          }
+
+        for (int j = 0; j + 7 <= size; j++)
+          if (line[j] && !line[j + 1] && line[j + 2] && line[j + 3]
+              && line[j + 4] && !line[j + 5] && line[j + 6]
+              && (light(line, j - 4, j) || light(line, j + 7, j + 11)))
+            result += 40;
+      }
+
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++) {
+        if (modules[y][x])
+          dark++;
+        if (x > 0 && y > 0 && modules[y][x] == modules[y][x - 1]
+            && modules[y][x] == modules[y - 1][x]
+            && modules[y][x] == modules[y - 1][x - 1])
+          result += 3;
+      }
+
+    final int total = size * size;
+    result += (Math.abs(dark * 20 - total * 10) + total - 1) / total * 10 - 10;
+    return result;
+  }
+
+  // Modules outside the symbol count as light, like the quiet zone
+  private boolean light(boolean[] line, int from, int to) {
+    for (int i = from; i < to; i++)
+      if (i >= 0 && i < line.length && line[i])
+        return false;
+    return true;
+  }
+
+  private void set(int x, int y, boolean dark) {
+    modules[y][x] = dark;
+    function[y][x] = true;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.auth.totp;
+
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapPalette;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
+
+/**
+ * Draws a QR code onto a map, scaled to the largest whole number of pixels per module that fits. The canvas is only drawn once.
+ */
+public class QRMapRenderer extends MapRenderer {
+
+  private static final int MAP_SIZE = 128;
+  private static final int QUIET_ZONE = 4;
+
+  private final boolean[][] modules;
+  private boolean rendered = false;
+
+  public QRMapRenderer(boolean[][] modules) {
+    this.modules = modules;
+  }
+
+  @Override
+  public void render(MapView view, MapCanvas canvas, Player player) {
+    if (rendered)
+      return;
+
+    final int size = modules.length;
+    final int scale = Math.max(1, MAP_SIZE / (size + QUIET_ZONE * 2));
+    final int offset = (MAP_SIZE - size * scale) / 2;
+
+    for (int y = 0; y < MAP_SIZE; y++)
+      for (int x = 0; x < MAP_SIZE; x++) {
+        final int mx = (x - offset) / scale;
+        final int my = (y - offset) / scale;
+        final boolean dark = x >= offset && y >= offset && mx < size
+            && my < size && modules[my][mx];
+        canvas.setPixel(x, y, dark ? MapPalette.DARK_GRAY : MapPalette.WHITE);
+      }
+    rendered = true;
+  }
+}
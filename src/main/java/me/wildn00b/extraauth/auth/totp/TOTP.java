@@ -19,7 +19,8 @@
 
 package me.wildn00b.extraauth.auth.totp;
 
-import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 import javax.crypto.Mac;
@@ -27,43 +28,192 @@ import javax.crypto.spec.SecretKeySpec;
 
 public class TOTP {
 
+  /**
+   * Keeps the Mac engines of one thread, so the provider lookup in Mac.getInstance only happens once per thread and algorithm.
+   */
+  private static class Engines {
+    final byte[] hash = new byte[64];
+    Mac sha1;
+    Mac sha256;
+    Mac sha512;
+
+    Mac get(int SHAbit) throws Exception {
+      switch (SHAbit) {
+      case 1:
+        if (sha1 == null)
+          sha1 = Mac.getInstance("HmacSHA1");
+        return sha1;
+      case 256:
+        if (sha256 == null)
+          sha256 = Mac.getInstance("HmacSHA256");
+        return sha256;
+      case 512:
+        if (sha512 == null)
+          sha512 = Mac.getInstance("HmacSHA512");
+        return sha512;
+      default:
+        throw new Exception("SHAbit can only be 1, 256, 512!");
+      }
+    }
+  }
+
+  private static final ThreadLocal<Engines> engines = new ThreadLocal<Engines>() {
+    @Override
+    protected Engines initialValue() {
+      return new Engines();
+    }
+  };
+
+  private static final int KEY_CACHE_SIZE = 1024;
+
+  // Decoded secrets, so Base32 only runs the first time an account authenticates
+  private static final Map<String, SecretKeySpec> keys = new LinkedHashMap<String, SecretKeySpec>(
+      16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, SecretKeySpec> eldest) {
+      return size() > KEY_CACHE_SIZE;
+    }
+  };
+
+  private static final int[] POWERS = { 1, 10, 100, 1000, 10000, 100000,
+      1000000, 10000000, 100000000, 1000000000 };
+
   public static String GeneratePrivateKey() {
     final byte[] key = new byte[16];
     new Random(System.nanoTime() + System.currentTimeMillis()).nextBytes(key);
     return Base32.encode(key).substring(0, 16);
   }
 
+  /**
+   * Calculates the one-time password for a time step as an integer.
+   * 
+   * @param key
+   *          The Base32 encoded secret
+   * @param time
+   *          The time step
+   * @param length
+   *          The number of digits, at most 9
+   * @param SHAbit
+   *          1, 256 or 512
+   * @return The one-time password
+   */
+  public static int GenerateOTP(String key, long time, int length, int SHAbit)
+      throws Exception {
+    final Engines engine = engines.get();
+    final Mac hmac = engine.get(SHAbit);
+    hmac.init(secret(key));
+
+    return otp(hmac, engine.hash, time, length);
+  }
+
   public static String GenerateTOTP(String key, long time, int length,
       int SHAbit) throws Exception {
-    String result = null;
+    final String result = Integer.toString(GenerateOTP(key, time, length,
+        SHAbit));
+
+    final StringBuilder padded = new StringBuilder(length);
+    for (int i = result.length(); i < length; i++)
+      padded.append('0');
+    return padded.append(result).toString();
+  }
 
-    final byte[] msg = ByteBuffer.allocate(8).putLong(time).array();
-    final byte[] k = Base32.decode(key);
-    final byte[] hash = hmacSHA(SHAbit, k, msg);
+  /**
+   * Parses a code typed by a player, ignoring surrounding whitespace.
+   * 
+   * @param input
+   *          What the player typed
+   * @param length
+   *          The number of digits the code must have
+   * @return The code, or -1 if it isn't exactly length digits.
+   */
+  public static int ParseCode(String input, int length) {
+    int start = 0;
+    int end = input.length();
+    while (start < end && Character.isWhitespace(input.charAt(start)))
+      start++;
+    while (end > start && Character.isWhitespace(input.charAt(end - 1)))
+      end--;
+
+    if (end - start != length)
+      return -1;
+
+    int code = 0;
+    for (int i = start; i < end; i++) {
+      final char c = input.charAt(i);
+      if (c < '0' || c > '9')
+        return -1;
+      code = code * 10 + (c - '0');
+    }
+    return code;
+  }
 
-    final int offset = hash[hash.length - 1] & 0xf;
+  /**
+   * Checks a parsed code against the one-time password of a time step, without building any strings.
+   * 
+   * @see #ParseCode(String, int)
+   */
+  public static boolean Verify(String key, long time, int length, int SHAbit,
+      int code) throws Exception {
+    return code >= 0 && GenerateOTP(key, time, length, SHAbit) == code;
+  }
 
-    final int binary = ((hash[offset] & 0x7f) << 24)
-        | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8)
-        | (hash[offset + 3] & 0xff);
+  /**
+   * Checks a parsed code against every time step in time-window to time+window in one pass, initializing the Mac only once. Steps up to and including lastStep are skipped, so an
+   * accepted code can't be used again.
+   * 
+   * @param window
+   *          How many steps of clock skew to accept in each direction
+   * @param lastStep
+   *          The last step that was accepted for this account, or -1
+   * @return The matching time step, or -1 if none matched.
+   * @see #ParseCode(String, int)
+   */
+  public static long VerifyWindow(String key, long time, int window,
+      int length, int SHAbit, int code, long lastStep) throws Exception {
+    if (code < 0)
+      return -1;
+
+    final Engines engine = engines.get();
+    final Mac hmac = engine.get(SHAbit);
+    hmac.init(secret(key));
+
+    for (long step = Math.max(time - window, lastStep + 1); step <= time
+        + window; step++)
+      if (otp(hmac, engine.hash, step, length) == code)
+        return step;
+    return -1;
+  }
 
-    final int otp = binary % (int) Math.pow(10, length);
+  private static int otp(Mac hmac, byte[] hash, long time, int length)
+      throws Exception {
+    for (int shift = 56; shift >= 0; shift -= 8)
+      hmac.update((byte) (time >>> shift));
 
-    result = Integer.toString(otp);
+    // doFinal resets the Mac but keeps its key, so it can be reused for the next counter
+    hmac.doFinal(hash, 0);
 
-    while (result.length() < length)
-      result = "0" + result;
+    final int offset = hash[hmac.getMacLength() - 1] & 0xf;
 
-    return result;
-  }
+    final int binary = ((hash[offset] & 0x7f) << 24)
+        | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8)
+        | (hash[offset + 3] & 0xff);
 
-  private static byte[] hmacSHA(int SHAbit, byte[] key, byte[] data)
-      throws Exception {
-    if (SHAbit != 1 && SHAbit != 256 && SHAbit != 512)
-      throw new Exception("SHAbit can only be 1, 256, 512!");
+    return binary % POWERS[length];
+  }
 
-    final Mac hmac = Mac.getInstance("HmacSHA" + SHAbit);
-    hmac.init(new SecretKeySpec(key, ""));
-    return hmac.doFinal(data);
+  private static SecretKeySpec secret(String key) throws Exception {
+    synchronized (keys) {
+      final SecretKeySpec spec = keys.get(key);
+      if (spec != null)
+        return spec;
+    }
+
+    final SecretKeySpec spec = new SecretKeySpec(Base32.decode(key), "RAW");
+    synchronized (keys) {
+      keys.put(key, spec);
+    }
+    return spec;
   }
-}
\ No newline at end of file
+}
@@ -19,122 +19,33 @@
 
 package me.wildn00b.extraauth.auth.totp;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import me.wildn00b.extraauth.ExtraAuth;
-import me.wildn00b.extraauth.api.AuthManager;
 import me.wildn00b.extraauth.api.AuthMethod;
 import me.wildn00b.extraauth.api.PlayerInformation;
 import me.wildn00b.extraauth.api.event.FailedReason;
-import me.wildn00b.extraauth.api.event.RegistrationFailedEvent;
-import me.wildn00b.extraauth.api.event.RegistrationSuccessfullEvent;
+import me.wildn00b.extraauth.io.Message;
 
-import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
 
 public class TOTPAuth extends AuthMethod {
 
-  class ProcesssingTOTP implements Runnable {
-    class Done implements Runnable {
-      private final FailedReason failedReason;
-      private final String message;
-      private final Player player;
-
-      public Done(String message, Player player, FailedReason failedReason) {
-        this.message = message;
-        this.player = player;
-        this.failedReason = failedReason;
-      }
-
-      @Override
-      public void run() {
-        switch (failedReason) {
-        case SUCCESSFULL:
-          extraauth
-              .getServer()
-              .getPluginManager()
-              .callEvent(
-                  new RegistrationSuccessfullEvent(new PlayerInformation(player
-                      .getName())));
-          break;
-        default:
-          extraauth
-              .getServer()
-              .getPluginManager()
-              .callEvent(
-                  new RegistrationFailedEvent(player.getName(), failedReason,
-                      AuthManager.GetAuthMethod("TOTP")));
-          break;
-        }
-        send(player, message);
-      }
-    }
-
-    private static final String tinyUrl = "http://tinyurl.com/api-create.php?url=";
-
-    private final Player player;
-
-    public ProcesssingTOTP(Player player) {
-      this.player = player;
-    }
-
-    @Override
-    public void run() {
-      final String privatekey = TOTP.GeneratePrivateKey();
-      FailedReason failedReason = extraauth.DB.Add(player.getName(),
-          AuthManager.GetAuthMethod("TOTP"), privatekey);
-      final String url = "http://chart.googleapis.com/chart?chs=400x400&cht=qr&chl=200x200&chld=M|0&cht=qr&chl=otpauth://totp/ExtraAuth@"
-          + (String) extraauth.Settings._("Servername", "Unknown server")
-          + "?secret=" + privatekey;
-      String message = null;
-      String tinyurl = null;
-      try {
-        tinyurl = shorter(url);
-      } catch (final IOException e) {
-      }
-
-      if (tinyurl != null) {
-        if (failedReason == FailedReason.SUCCESSFULL)
-          message = extraauth.Lang
-              ._("Command.Enable.TOTP.Success")
-              .replaceAll("%SERVERNAME%",
-                  (String) extraauth.Settings._("Servername", "Unknown server"))
-              .replaceAll("%URL%", tinyurl);
-        else if (failedReason == FailedReason.ALREADY_REGISTERED)
-          message = extraauth.Lang._("Command.Enable.AlreadyRegistered.Failed");
-        else if (failedReason == FailedReason.INVALID_METHOD)
-          message = extraauth.Lang._("Command.Enable.InvalidMethod.Failed");
-        else
-          message = extraauth.Lang._("Command.Enable.Unknown.Failed");
-
-      } else {
-        message = extraauth.Lang._("Command.Enable.UrlFailed");
-        extraauth.DB.Remove(player.getName());
-        failedReason = FailedReason.URL_FAILED;
-      }
-      extraauth
-          .getServer()
-          .getScheduler()
-          .runTask(extraauth,
-              new ProcesssingTOTP.Done(message, player, failedReason));
-    }
-
-    public String shorter(String url) throws IOException {
-      final String tinyUrlLookup = tinyUrl + URLEncoder.encode(url, "UTF-8");
-      final BufferedReader reader = new BufferedReader(new InputStreamReader(
-          new URL(tinyUrlLookup).openStream()));
-      final String tinyUrl = reader.readLine();
-      return tinyUrl;
-    }
-  }
-
   ExtraAuth extraauth = ExtraAuth.INSTANCE;
 
+  // Last accepted time step per account, a code is only valid once
+  private final ConcurrentHashMap<String, Long> lastStep = new ConcurrentHashMap<String, Long>();
+  // QR maps that are still out there, taken back once the player has used them
+  private final ConcurrentHashMap<String, MapView> maps = new ConcurrentHashMap<String, MapView>();
+
   @Override
   public boolean AllowOtherToEnable() {
     return false;
@@ -149,14 +60,25 @@ public class TOTPAuth extends AuthMethod {
       for (int i = 1; i < args.length; i++)
         key += " " + (String) args[1];
       final long time = System.currentTimeMillis() / 30000L;
+      final int window = extraauth.Settings.Get().TOTPWindow;
       final String PrivateKey = information.getPrivateKey();
+      final String account = information.getPlayer().toLowerCase(
+          Locale.ENGLISH);
       try {
-        if (TOTP.GenerateTOTP(PrivateKey, time, 6, 1).trim()
-            .equalsIgnoreCase(key.trim())) {
-          information.setAuthed(true);
-          return FailedReason.SUCCESSFULL;
-        } else
+        final Long last = lastStep.get(account);
+        final long step = TOTP.VerifyWindow(PrivateKey, time, window, 6, 1,
+            TOTP.ParseCode(key, 6), last == null ? -1 : last.longValue());
+        if (step < 0)
+          return FailedReason.WRONG_KEY;
+
+        // Lost the race against another attempt with the same code
+        if (last == null ? lastStep.putIfAbsent(account, step) != null
+            : !lastStep.replace(account, last, step))
           return FailedReason.WRONG_KEY;
+
+        information.setAuthed(true);
+        takeMap(information.getPlayerObj());
+        return FailedReason.SUCCESSFULL;
       } catch (final Exception e) {
         return FailedReason.UNKNOWN;
       }
@@ -166,7 +88,7 @@ public class TOTPAuth extends AuthMethod {
 
   @Override
   public String GetHelpLine(String language) {
-    return ExtraAuth.INSTANCE.Lang._("Command.Enable.TOTP.Help");
+    return ExtraAuth.INSTANCE.Lang._(language, "Command.Enable.TOTP.Help");
   }
 
   @Override
@@ -179,19 +101,102 @@ public class TOTPAuth extends AuthMethod {
     return "";
   }
 
+  /**
+   * Builds the otpauth:// URI that authenticator apps read from the QR code.
+   */
+  public String GetURI(String player, String privatekey) {
+    final String servername = extraauth.Settings.Get().Servername;
+    return "otpauth://totp/" + encode(servername) + ":" + encode(player)
+        + "?secret=" + privatekey + "&issuer=" + encode(servername);
+  }
+
+  @Override
+  public void OnDisable(String player) {
+    lastStep.remove(player.toLowerCase(Locale.ENGLISH));
+    takeMap(extraauth.getServer().getPlayerExact(player));
+  }
+
   @Override
   public FailedReason OnEnable(PlayerInformation information, Object... args) {
-    extraauth
-        .getServer()
-        .getScheduler()
-        .runTaskAsynchronously(extraauth,
-            new ProcesssingTOTP(information.getPlayerObj()));
+    final String privatekey = TOTP.GeneratePrivateKey();
+    information.setPrivateKey(privatekey);
+    // Steps accepted for an old secret mean nothing for the new one
+    lastStep.remove(information.getPlayer().toLowerCase(Locale.ENGLISH));
+
+    final Player player = information.getPlayerObj();
+    if (player == null)
+      return FailedReason.SUCCESSFULL;
+
+    final String uri = GetURI(information.getPlayer(), privatekey);
+    player.sendMessage(extraauth.Lang.Get(player, "Command.Enable.TOTP.Enrolled")
+        .Prefixed("SERVERNAME", extraauth.Settings.Get().Servername, "URL",
+            uri, "SECRET", privatekey));
+
+    if (extraauth.Settings.Get().TOTPQRMap)
+      try {
+        giveMap(player, QRCode.Encode(uri));
+      } catch (final Exception e) {
+        e.printStackTrace();
+      }
     return FailedReason.SUCCESSFULL;
   }
 
+  @Override
+  public void OnLogout(Player player) {
+    takeMap(player);
+  }
+
+  // Spaces have to be %20 in an otpauth URI, URLEncoder uses +
+  private String encode(String text) {
+    try {
+      return URLEncoder.encode(text, "UTF-8").replace("+", "%20");
+    } catch (final UnsupportedEncodingException e) {
+      return text;
+    }
+  }
+
+  private void giveMap(Player player, boolean[][] qr) {
+    if (player.getInventory().firstEmpty() == -1) {
+      send(player, extraauth.Lang._(player, "Command.Enable.TOTP.InventoryFull"));
+      return;
+    }
+
+    final MapView view = extraauth.getServer().createMap(player.getWorld());
+    for (final MapRenderer renderer : view.getRenderers()
+        .toArray(new MapRenderer[0]))
+      view.removeRenderer(renderer);
+    view.addRenderer(new QRMapRenderer(qr));
+
+    maps.put(player.getName().toLowerCase(Locale.ENGLISH), view);
+    player.getInventory().addItem(
+        new ItemStack(Material.MAP, 1, view.getId()));
+    send(player, extraauth.Lang._(player, "Command.Enable.TOTP.Map"));
+  }
+
   private void send(CommandSender sender, String msg) {
-    sender
-        .sendMessage(ChatColor.YELLOW + "[ExtraAuth] " + ChatColor.GOLD + msg);
+    sender.sendMessage(Message.PREFIX + msg);
+  }
+
+  /**
+   * Takes the QR map holding the secret back from the player, and blanks it in case it was passed on.
+   */
+  private void takeMap(Player player) {
+    if (player == null)
+      return;
+    final MapView view = maps.remove(player.getName().toLowerCase(
+        Locale.ENGLISH));
+    if (view == null)
+      return;
+
+    for (final MapRenderer renderer : view.getRenderers()
+        .toArray(new MapRenderer[0]))
+      view.removeRenderer(renderer);
+
+    final ItemStack[] contents = player.getInventory().getContents();
+    for (int i = 0; i < contents.length; i++)
+      if (contents[i] != null && contents[i].getType() == Material.MAP
+          && contents[i].getDurability() == view.getId())
+        player.getInventory().setItem(i, null);
   }
 
 }
@@ -0,0 +1,64 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.command;
+
+import me.wildn00b.extraauth.ExtraAuth;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * The account state of whoever runs a command, looked up once per command and then checked against each {@link CommandAccountPermission}.
+ */
+public final class AccountState {
+
+  private static final AccountState CONSOLE = new AccountState(false, false,
+      true);
+
+  /**
+   * Looks up the account and session of the sender. Anything that isn't a player passes every check.
+   */
+  public static AccountState Of(ExtraAuth extraauth, CommandSender sender) {
+    if (!(sender instanceof Player))
+      return CONSOLE;
+
+    final Player player = (Player) sender;
+    final boolean hasAccount = extraauth.DB.Contains(player.getName());
+    return new AccountState(true, hasAccount, !hasAccount
+        || extraauth.Sessions.IsAuth(player));
+  }
+
+  /**
+   * True when the player has authenticated, or has no account.
+   */
+  public final boolean Authed;
+  public final boolean HasAccount;
+  public final boolean IsPlayer;
+
+  private AccountState(boolean isPlayer, boolean hasAccount, boolean authed) {
+    IsPlayer = isPlayer;
+    HasAccount = hasAccount;
+    Authed = authed;
+  }
+
+  public boolean Allows(CommandAccountPermission perms) {
+    return !IsPlayer || perms.getCheck().Run(this);
+  }
+}
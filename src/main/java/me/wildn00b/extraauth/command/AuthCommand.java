@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import me.wildn00b.extraauth.ExtraAuth;
+import me.wildn00b.extraauth.api.AuthFuture;
 import me.wildn00b.extraauth.api.AuthManager;
 import me.wildn00b.extraauth.api.AuthMethod;
 import me.wildn00b.extraauth.api.PlayerInformation;
@@ -36,6 +37,9 @@ import me.wildn00b.extraauth.api.event.RegistrationFailedEvent;
 import me.wildn00b.extraauth.api.event.RegistrationSuccessfullEvent;
 import me.wildn00b.extraauth.api.event.UnregistrationFailedEvent;
 import me.wildn00b.extraauth.api.event.UnregistrationSuccessfullEvent;
+import me.wildn00b.extraauth.auth.key.HashPool;
+import me.wildn00b.extraauth.io.Message;
+import me.wildn00b.extraauth.io.SessionTable.Session;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -54,47 +58,65 @@ public class AuthCommand implements CommandExecutor {
   @Override
   public boolean onCommand(CommandSender sender, Command command, String label,
       String[] args) {
+    AccountState state = null;
     try {
+      state = AccountState.Of(extraauth, sender);
       if (args.length > 0) {
         if (args[0].equalsIgnoreCase("reload") && p(sender, "auth.reload")
-            && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
-          extraauth.Reload();
+            && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
+          Reload(sender);
         else if (args[0].equalsIgnoreCase("disable")
             && p(sender, "auth.disable", false)
-            && canUseCommand(sender,
+            && canUseCommand(state,
                 CommandAccountPermission.GOT_ACCOUNT_AND_LOGGED_IN))
           Disable(sender);
         else if (args[0].equalsIgnoreCase("disableother")
             && p(sender, "auth.disableother", false)
-            && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
+            && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
           DisableOther(sender, args);
         else if (args[0].equalsIgnoreCase("help"))
-          Help(sender, label, args);
+          Help(sender, label, args, state);
         else if (args[0].equalsIgnoreCase("enable") && sender instanceof Player
-            && canUseCommand(sender, CommandAccountPermission.NO_ACCOUNT))
-          Enable(sender, label, args);
+            && canUseCommand(state, CommandAccountPermission.NO_ACCOUNT))
+          Enable(sender, label, args, state);
         else if (args[0].equalsIgnoreCase("enableother")
-            && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
-          EnableOther(sender, label, args);
+            && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
+          EnableOther(sender, label, args, state);
         else if (sender instanceof Player
-            && canUseCommand(sender, CommandAccountPermission.NOT_LOGGED_IN))
+            && canUseCommand(state, CommandAccountPermission.NOT_LOGGED_IN))
           Auth(sender, args);
         else
-          ShowHelp(sender, label, 1);
+          ShowHelp(sender, label, 1, state);
       } else
-        ShowHelp(sender, label, 1);
+        ShowHelp(sender, label, 1, state);
     } catch (final ArrayIndexOutOfBoundsException e) {
-      ShowHelp(sender, label, 1);
+      ShowHelp(sender, label, 1, state);
     } catch (final Exception e) {
       e.printStackTrace();
-      send(sender, extraauth.Lang._("Command.Exception"));
+      send(sender, extraauth.Lang._(sender, "Command.Exception"));
     }
 
     return true;
   }
 
-  private void Auth(CommandSender sender, String[] args) {
+  private void Auth(final CommandSender sender, String[] args) {
     final Player player = (Player) sender;
+    final Session session = extraauth.Sessions.Get(player);
+    final long wait = extraauth.Throttle.Acquire(player.getName(),
+        session != null ? session.IP : null);
+    if (wait > 0) {
+      extraauth
+          .getServer()
+          .getPluginManager()
+          .callEvent(
+              new AuthenticateFailedEvent(new PlayerInformation(player
+                  .getName()), FailedReason.THROTTLED));
+      sender.sendMessage(extraauth.Lang.Get(sender,
+          "Command.Auth.Throttled.Failed").Prefixed("SECONDS",
+          (wait + 999) / 1000));
+      return;
+    }
+
     final PreAuthenticateEvent event = new PreAuthenticateEvent(
         new PlayerInformation(player.getName()));
     extraauth.getServer().getPluginManager().callEvent(event);
@@ -105,48 +127,58 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new AuthenticateFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.CANCELED));
-      send(sender, extraauth.Lang._("Command.Auth.Event.Failed"));
-    } else {
-      final FailedReason ret = extraauth.DB.Auth(player, (Object[]) args);
-      if (ret == FailedReason.SUCCESSFULL) {
-        extraauth
-            .getServer()
-            .getPluginManager()
-            .callEvent(
-                new AuthenticateSuccessfullEvent(new PlayerInformation(player
-                    .getName())));
-        send(sender, extraauth.Lang._("Command.Auth.Success"));
-      } else {
-        extraauth
-            .getServer()
-            .getPluginManager()
-            .callEvent(
-                new AuthenticateFailedEvent(new PlayerInformation(player
-                    .getName()), ret));
-
-        if (ret == FailedReason.NOT_REGISTERED)
-          send(sender, extraauth.Lang._("Command.Auth.NotRegistered.Failed"));
-        else if (ret == FailedReason.ALREADY_AUTHED)
-          send(sender, extraauth.Lang._("Command.Auth.AlreadyAuthed.Failed"));
-        else if (ret == FailedReason.WRONG_KEY)
-          send(sender, extraauth.Lang._("Command.Auth.WrongKey.Failed"));
-        else if (ret == FailedReason.INVALID_METHOD)
-          send(sender, extraauth.Lang._("Command.Auth.InvalidMethod.Failed"));
-        else if (ret == FailedReason.INVALID_ARGS)
-          send(sender, extraauth.Lang._("Command.InvalidArgs"));
-        else
-          send(sender, extraauth.Lang._("Command.Auth.Unknown.Failed"));
-      }
-    }
-
+      send(sender, extraauth.Lang._(sender, "Command.Auth.Event.Failed"));
+    } else
+      extraauth.DB.AuthAsync(player, (Object[]) args).OnComplete(
+          new AuthFuture.Callback() {
+            @Override
+            public void Done(FailedReason ret) {
+              if (ret == FailedReason.SUCCESSFULL) {
+                extraauth.Throttle.Reset(player.getName());
+                extraauth
+                    .getServer()
+                    .getPluginManager()
+                    .callEvent(
+                        new AuthenticateSuccessfullEvent(new PlayerInformation(
+                            player.getName())));
+                send(sender, extraauth.Lang._(sender, "Command.Auth.Success"));
+              } else {
+                extraauth
+                    .getServer()
+                    .getPluginManager()
+                    .callEvent(
+                        new AuthenticateFailedEvent(new PlayerInformation(
+                            player.getName()), ret));
+
+                if (ret == FailedReason.NOT_REGISTERED)
+                  send(sender, extraauth.Lang._(sender,
+                      "Command.Auth.NotRegistered.Failed"));
+                else if (ret == FailedReason.ALREADY_AUTHED)
+                  send(sender, extraauth.Lang._(sender,
+                      "Command.Auth.AlreadyAuthed.Failed"));
+                else if (ret == FailedReason.WRONG_KEY)
+                  send(sender,
+                      extraauth.Lang._(sender, "Command.Auth.WrongKey.Failed"));
+                else if (ret == FailedReason.BUSY)
+                  sender.sendMessage(extraauth.Lang.Get(sender,
+                      "Command.Auth.Busy.Failed").Prefixed("QUEUE",
+                      HashPool.GetQueueDepth()));
+                else if (ret == FailedReason.INVALID_METHOD)
+                  send(sender, extraauth.Lang._(sender,
+                      "Command.Auth.InvalidMethod.Failed"));
+                else if (ret == FailedReason.INVALID_ARGS)
+                  send(sender, extraauth.Lang._(sender, "Command.InvalidArgs"));
+                else
+                  send(sender,
+                      extraauth.Lang._(sender, "Command.Auth.Unknown.Failed"));
+              }
+            }
+          });
   }
 
-  private boolean canUseCommand(CommandSender sender,
+  private boolean canUseCommand(AccountState state,
       CommandAccountPermission perms) {
-    if (sender instanceof Player)
-      return perms.getCheck().Run(((Player) sender).getName());
-    else
-      return true;
+    return state.Allows(perms);
   }
 
   private void Disable(CommandSender sender) {
@@ -162,7 +194,7 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.CANCELED));
-      send(sender, extraauth.Lang._("Command.Disable.Event.Failed"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Event.Failed"));
     } else if (!extraauth.DB.Contains(player.getName())) {
       extraauth
           .getServer()
@@ -170,20 +202,20 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.NOT_REGISTERED));
-      send(sender, extraauth.Lang._("Command.Disable.NotRegistered.Failed"));
-    } else if (!extraauth.DB.Get(player.getName()).Authed) {
+      send(sender, extraauth.Lang._(sender, "Command.Disable.NotRegistered.Failed"));
+    } else if (!extraauth.DB.IsAuth(player.getName())) {
       extraauth
           .getServer()
           .getPluginManager()
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.NEED_TO_AUTHENTICATE));
-      send(sender, extraauth.Lang._("NeedToAuthenticate"));
+      send(sender, extraauth.Lang._(sender, "NeedToAuthenticate"));
 
     } else if (extraauth.DB.Remove(player.getName()) == FailedReason.SUCCESSFULL) {
       extraauth.getServer().getPluginManager()
           .callEvent(new UnregistrationSuccessfullEvent(player.getName()));
-      send(sender, extraauth.Lang._("Command.Disable.Success"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Success"));
     } else {
       extraauth
           .getServer()
@@ -191,13 +223,13 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.UNKNOWN));
-      send(sender, extraauth.Lang._("Command.Disable.Unknown.Failed"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Unknown.Failed"));
     }
   }
 
   private void DisableOther(CommandSender sender, String[] args) {
     if (args.length < 2 && extraauth.DB.Contains(args[1])) {
-      send(sender, extraauth.Lang._("Command.NoPlayer"));
+      send(sender, extraauth.Lang._(sender, "Command.NoPlayer"));
       return;
     }
     final PreUnregistrationEvent event = new PreUnregistrationEvent(
@@ -211,7 +243,7 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(args[1]),
                   FailedReason.CANCELED));
-      send(sender, extraauth.Lang._("Command.Disable.Event.Failed"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Event.Failed"));
     } else if (!extraauth.DB.Contains(args[1])
         && extraauth.DB.Get(args[1]) != null) {
       extraauth
@@ -221,11 +253,11 @@ public class AuthCommand implements CommandExecutor {
               new UnregistrationFailedEvent(new PlayerInformation(args[1]),
                   FailedReason.NOT_REGISTERED));
       send(sender,
-          extraauth.Lang._("Command.Disable.NotRegistered.Other.Failed"));
+          extraauth.Lang._(sender, "Command.Disable.NotRegistered.Other.Failed"));
     } else if (extraauth.DB.Remove(args[1], false) == FailedReason.SUCCESSFULL) {
       extraauth.getServer().getPluginManager()
           .callEvent(new UnregistrationSuccessfullEvent(args[1]));
-      send(sender, extraauth.Lang._("Command.Disable.Other.Success"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Other.Success"));
     } else {
       extraauth
           .getServer()
@@ -233,27 +265,28 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(args[1]),
                   FailedReason.UNKNOWN));
-      send(sender, extraauth.Lang._("Command.Disable.Unknown.Failed"));
+      send(sender, extraauth.Lang._(sender, "Command.Disable.Unknown.Failed"));
 
     }
   }
 
-  private void Enable(CommandSender sender, String label, String[] args) {
+  private void Enable(final CommandSender sender, final String label,
+      String[] args, AccountState state) {
 
     final Player player = (Player) sender;
     if (args.length < 2) {
-      ShowHelp(sender, label, 1);
+      ShowHelp(sender, label, 1, state);
       return;
     }
-    if (extraauth.DB.Get(player.getName()) != null
-        && !extraauth.DB.Get(player.getName()).Authed) {
+    if (extraauth.DB.Contains(player.getName())
+        && !extraauth.DB.IsAuth(player.getName())) {
       extraauth
           .getServer()
           .getPluginManager()
           .callEvent(
               new UnregistrationFailedEvent(new PlayerInformation(player
                   .getName()), FailedReason.NEED_TO_AUTHENTICATE));
-      send(sender, extraauth.Lang._("NeedToAuthenticate"));
+      send(sender, extraauth.Lang._(sender, "NeedToAuthenticate"));
     } else {
       final PreRegistrationEvent event = new PreRegistrationEvent(
           player.getName());
@@ -266,49 +299,29 @@ public class AuthCommand implements CommandExecutor {
             .callEvent(
                 new RegistrationFailedEvent(player.getName(),
                     FailedReason.CANCELED, AuthManager.GetAuthMethod("Unknown")));
-        send(sender, extraauth.Lang._("Command.Enable.Event.Failed"));
+        send(sender, extraauth.Lang._(sender, "Command.Enable.Event.Failed"));
       } else if (p(player, "auth.enable." + args[1].toLowerCase())) {
-        if (args.length > 2) {
-          final Object arg[] = Arrays.copyOfRange(args, 2, args.length);
-
-          final FailedReason reason = extraauth.DB.Add(player.getName(),
-              AuthManager.GetAuthMethod(args[1].toLowerCase()), arg);
-          if (reason == FailedReason.SUCCESSFULL) {
-            extraauth
-                .getServer()
-                .getPluginManager()
-                .callEvent(
-                    new RegistrationSuccessfullEvent(new PlayerInformation(
-                        player.getName())));
-            send(sender, extraauth.Lang._("Command.Enable.General.Success"));
-          } else {
-            extraauth
-                .getServer()
-                .getPluginManager()
-                .callEvent(
-                    new RegistrationFailedEvent(player.getName(), reason,
-                        AuthManager.GetAuthMethod(args[1].toLowerCase())));
-            if (reason == FailedReason.ALREADY_REGISTERED)
-              send(sender,
-                  extraauth.Lang._("Command.Enable.AlreadyRegistered.Failed"));
-            else if (reason == FailedReason.INVALID_METHOD)
-              send(sender,
-                  extraauth.Lang._("Command.Enable.InvalidMethod.Failed"));
-            else if (reason == FailedReason.INVALID_ARGS)
-              ShowHelp(sender, label, 1);
-            else
-              send(sender, extraauth.Lang._("Command.Enable.Unknown.Failed"));
-          }
-        } else
-          ShowHelp(sender, label, 1);
+        final Object arg[] = Arrays.copyOfRange(args, 2, args.length);
+        final String name = args[1].toLowerCase();
+
+        extraauth.DB.AddAsync(player.getName(),
+            AuthManager.GetAuthMethod(name), arg).OnComplete(
+            new AuthFuture.Callback() {
+              @Override
+              public void Done(FailedReason reason) {
+                registered(sender, label, player.getName(), name, reason,
+                    false);
+              }
+            });
       } else
-        ShowHelp(sender, label, 1);
+        ShowHelp(sender, label, 1, state);
     }
   }
 
-  private void EnableOther(CommandSender sender, String label, String[] args) {
+  private void EnableOther(final CommandSender sender, final String label,
+      String[] args, AccountState state) {
     if (args.length < 4) {
-      ShowHelp(sender, label, 1);
+      ShowHelp(sender, label, 1, state);
       return;
     }
 
@@ -322,52 +335,30 @@ public class AuthCommand implements CommandExecutor {
           .callEvent(
               new RegistrationFailedEvent(args[2], FailedReason.CANCELED,
                   AuthManager.GetAuthMethod("Unknown")));
-      send(sender, extraauth.Lang._("Command.Enable.Event.Failed"));
+      send(sender, extraauth.Lang._(sender, "Command.Enable.Event.Failed"));
     } else if (p(sender, "auth.enableother." + args[1].toLowerCase())
         && AuthManager.GetAuthMethod(args[1]).AllowOtherToEnable()) {
-      if (args.length > 3) {
-        final Object arg[] = Arrays.copyOfRange(args, 3, args.length);
-
-        final FailedReason reason = extraauth.DB.Add(args[2],
-            AuthManager.GetAuthMethod(args[1]), arg);
-        if (reason == FailedReason.SUCCESSFULL) {
-          extraauth
-              .getServer()
-              .getPluginManager()
-              .callEvent(
-                  new RegistrationSuccessfullEvent(new PlayerInformation(
-                      args[2])));
-          send(sender, extraauth.Lang._("Command.Enable.Other.General.Success"));
-        } else {
-          extraauth
-              .getServer()
-              .getPluginManager()
-              .callEvent(
-                  new RegistrationFailedEvent(args[2], reason, AuthManager
-                      .GetAuthMethod(args[1].toLowerCase())));
-          if (reason == FailedReason.ALREADY_REGISTERED)
-            send(sender,
-                extraauth.Lang
-                    ._("Command.Enable.Other.AlreadyRegistered.Failed"));
-          else if (reason == FailedReason.INVALID_METHOD)
-            send(sender,
-                extraauth.Lang._("Command.Enable.InvalidMethod.Failed"));
-          else if (reason == FailedReason.INVALID_ARGS)
-            ShowHelp(sender, label, 1);
-          else
-            send(sender, extraauth.Lang._("Command.Enable.Unknown.Failed"));
-        }
-      } else
-        ShowHelp(sender, label, 1);
+      final Object arg[] = Arrays.copyOfRange(args, 3, args.length);
+      final String player = args[2];
+      final String name = args[1].toLowerCase();
+
+      extraauth.DB.AddAsync(player, AuthManager.GetAuthMethod(name), arg)
+          .OnComplete(new AuthFuture.Callback() {
+            @Override
+            public void Done(FailedReason reason) {
+              registered(sender, label, player, name, reason, true);
+            }
+          });
     } else
-      ShowHelp(sender, label, 1);
+      ShowHelp(sender, label, 1, state);
   }
 
-  private void Help(CommandSender sender, String label, String[] args) {
+  private void Help(CommandSender sender, String label, String[] args,
+      AccountState state) {
     if (args.length > 1)
-      ShowHelp(sender, label, Integer.parseInt(args[1]));
+      ShowHelp(sender, label, Integer.parseInt(args[1]), state);
     else
-      ShowHelp(sender, label, 1);
+      ShowHelp(sender, label, 1, state);
 
   }
 
@@ -383,46 +374,103 @@ public class AuthCommand implements CommandExecutor {
       return consoleDefault;
   }
 
+  // Reloads the config and language, then shows the cache and queue stats
+  private void Reload(CommandSender sender) {
+    extraauth.Reload();
+    send(sender, extraauth.Lang._(sender, "ExtraAuth.Reload"));
+    sender.sendMessage(extraauth.Lang.Get(sender, "Command.Reload.Stats")
+        .Prefixed("HITS", extraauth.Vault.GetCacheHits(), "MISSES",
+            extraauth.Vault.GetCacheMisses(), "QUEUE",
+            HashPool.GetQueueDepth()));
+  }
+
+  /**
+   * Reports the result of enabling, for the sender's own account or with other set for another player's.
+   */
+  private void registered(CommandSender sender, String label, String player,
+      String method, FailedReason reason, boolean other) {
+    if (reason == FailedReason.SUCCESSFULL) {
+      extraauth
+          .getServer()
+          .getPluginManager()
+          .callEvent(
+              new RegistrationSuccessfullEvent(new PlayerInformation(player)));
+      send(sender, extraauth.Lang._(sender,
+          other ? "Command.Enable.Other.General.Success"
+              : "Command.Enable.General.Success"));
+    } else {
+      extraauth
+          .getServer()
+          .getPluginManager()
+          .callEvent(
+              new RegistrationFailedEvent(player, reason, AuthManager
+                  .GetAuthMethod(method)));
+      if (reason == FailedReason.ALREADY_REGISTERED)
+        send(sender, extraauth.Lang._(sender,
+            other ? "Command.Enable.Other.AlreadyRegistered.Failed"
+                : "Command.Enable.AlreadyRegistered.Failed"));
+      else if (reason == FailedReason.INVALID_METHOD)
+        send(sender,
+            extraauth.Lang._(sender, "Command.Enable.InvalidMethod.Failed"));
+      else if (reason == FailedReason.INVALID_ARGS)
+        ShowHelp(sender, label, 1);
+      else if (reason == FailedReason.BUSY)
+        sender.sendMessage(extraauth.Lang.Get(sender,
+            "Command.Enable.Busy.Failed").Prefixed("QUEUE",
+            HashPool.GetQueueDepth()));
+      else
+        send(sender, extraauth.Lang._(sender, "Command.Enable.Unknown.Failed"));
+    }
+  }
+
   private void send(CommandSender sender, String msg) {
-    sender
-        .sendMessage(ChatColor.YELLOW + "[ExtraAuth] " + ChatColor.GOLD + msg);
+    sender.sendMessage(Message.PREFIX + msg);
   }
 
   private void ShowHelp(CommandSender sender, String label, int page) {
+    ShowHelp(sender, label, page, AccountState.Of(extraauth, sender));
+  }
+
+  /**
+   * @param state
+   *          The sender's state if the command already looked it up, null to look it up here
+   */
+  private void ShowHelp(CommandSender sender, String label, int page,
+      AccountState state) {
+    if (state == null)
+      state = AccountState.Of(extraauth, sender);
     final ArrayList<String> cmds = new ArrayList<String>();
 
     cmds.add(ChatColor.YELLOW
         + "/"
         + label
         + " help "
-        + extraauth.Lang._("Command.Help").replaceFirst("- ",
+        + extraauth.Lang._(sender, "Command.Help").replaceFirst("- ",
             ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
 
     if (p(sender, "tgym.reload")
-        && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
+        && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
       cmds.add(ChatColor.YELLOW
           + "/"
           + label
           + " reload "
-          + extraauth.Lang._("Command.Reload").replaceFirst("- ",
+          + extraauth.Lang._(sender, "Command.Reload").replaceFirst("- ",
               ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
 
     if (sender instanceof Player
-        && new PlayerInformation(sender.getName()).getExist()
-        && canUseCommand(sender, CommandAccountPermission.NOT_LOGGED_IN))
+        && state.HasAccount
+        && canUseCommand(state, CommandAccountPermission.NOT_LOGGED_IN))
       cmds.add(ChatColor.YELLOW
           + "/"
           + label
           + " "
-          + extraauth.Lang._("Command.Auth.Help").replaceFirst("- ",
+          + extraauth.Lang._(sender, "Command.Auth.Help").replaceFirst("- ",
               ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
 
-    for (final Class<? extends AuthMethod> clazz : AuthManager.Methods)
+    for (final AuthMethod method : AuthManager.GetAuthMethods())
       try {
-        final AuthMethod method = clazz.newInstance();
-
         if (p(sender, "tgym.enable." + method.GetName().toLowerCase(), false)
-            && canUseCommand(sender, CommandAccountPermission.NO_ACCOUNT))
+            && canUseCommand(state, CommandAccountPermission.NO_ACCOUNT))
           cmds.add(ChatColor.YELLOW
               + "/"
               + label
@@ -430,13 +478,13 @@ public class AuthCommand implements CommandExecutor {
               + method.GetName().toLowerCase()
               + " "
               + method.GetHelpLine(
-                  (String) extraauth.Settings._("Language", "en-US"))
+                  extraauth.Lang.LanguageOf(sender))
                   .replaceFirst("- ",
                       ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
         if (p(sender, "tgym.enableother." + method.GetName().toLowerCase(),
             true)
             && method.AllowOtherToEnable()
-            && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
+            && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
           cmds.add(ChatColor.YELLOW
               + "/"
               + label
@@ -444,29 +492,29 @@ public class AuthCommand implements CommandExecutor {
               + method.GetName().toLowerCase()
               + " "
               + method.GetOtherHelpLine(
-                  (String) extraauth.Settings._("Language", "en-US"))
+                  extraauth.Lang.LanguageOf(sender))
                   .replaceFirst("- ",
                       ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
       } catch (final Exception e) {
       }
 
     if (p(sender, "tgym.disable", false)
-        && canUseCommand(sender,
+        && canUseCommand(state,
             CommandAccountPermission.GOT_ACCOUNT_AND_LOGGED_IN))
       cmds.add(ChatColor.YELLOW
           + "/"
           + label
           + " disable "
-          + extraauth.Lang._("Command.Disable.Help").replaceFirst("- ",
+          + extraauth.Lang._(sender, "Command.Disable.Help").replaceFirst("- ",
               ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
 
     if (p(sender, "tgym.disableother")
-        && canUseCommand(sender, CommandAccountPermission.LOGGED_IN))
+        && canUseCommand(state, CommandAccountPermission.LOGGED_IN))
       cmds.add(ChatColor.YELLOW
           + "/"
           + label
           + " disableother "
-          + extraauth.Lang._("Command.Disable.Other.Help").replaceFirst("- ",
+          + extraauth.Lang._(sender, "Command.Disable.Other.Help").replaceFirst("- ",
               ChatColor.DARK_AQUA + "-" + ChatColor.GOLD + " "));
 
     final int maxpage = 1 + (cmds.size() - 1) / 6;
@@ -477,13 +525,11 @@ public class AuthCommand implements CommandExecutor {
     sender.sendMessage(""
         + ChatColor.RED
         + ChatColor.BOLD
-        + extraauth.Lang
-            ._("Command.Title")
-            .replaceAll("%VERSION%", extraauth.Version)
-            .replaceAll("%PAGE%", "" + ChatColor.RED + page + ChatColor.AQUA)
-            .replaceAll("%MAXPAGE%",
-                "" + ChatColor.BLUE + maxpage + ChatColor.GOLD)
-            .replaceAll("%AUTHOR%", ChatColor.YELLOW + "WildN00b"));
+        + extraauth.Lang.Get(sender, "Command.Title").Format("VERSION",
+            extraauth.Version, "PAGE",
+            "" + ChatColor.RED + page + ChatColor.AQUA, "MAXPAGE",
+            "" + ChatColor.BLUE + maxpage + ChatColor.GOLD, "AUTHOR",
+            ChatColor.YELLOW + "WildN00b"));
     try {
       for (int i = (page - 1) * 6; i < ((page - 1) * 6) + 6; i++)
         sender.sendMessage(cmds.get(i));
@@ -19,45 +19,31 @@
 
 package me.wildn00b.extraauth.command;
 
-import me.wildn00b.extraauth.ExtraAuth;
-import me.wildn00b.extraauth.io.PlayerStatusDB;
-
 public enum CommandAccountPermission {
   GOT_ACCOUNT_AND_LOGGED_IN(new Check() {
     @Override
-    public boolean Run(String player) {
-      if (DB.Contains(player))
-        return DB.Get(player).Authed;
-      else
-        return false;
+    public boolean Run(AccountState state) {
+      return state.HasAccount && state.Authed;
     }
   }), LOGGED_IN(new Check() {
     @Override
-    public boolean Run(String player) {
-      if (DB.Contains(player))
-        return DB.Get(player).Authed;
-      else
-        return true;
+    public boolean Run(AccountState state) {
+      return !state.HasAccount || state.Authed;
     }
   }), NO_ACCOUNT(new Check() {
     @Override
-    public boolean Run(String player) {
-      return !DB.Contains(player);
+    public boolean Run(AccountState state) {
+      return !state.HasAccount;
     }
   }), NOT_LOGGED_IN(new Check() {
     @Override
-    public boolean Run(String player) {
-      if (DB.Contains(player))
-        return !DB.Get(player).Authed;
-      else
-        return false;
+    public boolean Run(AccountState state) {
+      return state.HasAccount && !state.Authed;
     }
   });
 
   public abstract interface Check {
-    PlayerStatusDB DB = ExtraAuth.INSTANCE.DB;
-
-    public abstract boolean Run(String player);
+    public abstract boolean Run(AccountState state);
   }
 
   private Check check;
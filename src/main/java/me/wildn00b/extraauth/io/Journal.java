@@ -0,0 +1,107 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only file of length-prefixed records. A record that was only partly written (because of a crash) is dropped when the journal is read back.
+ */
+public class Journal {
+
+  private final File file;
+
+  public Journal(File file) {
+    this.file = file;
+  }
+
+  public void Append(List<byte[]> records) throws IOException {
+    if (records.isEmpty())
+      return;
+
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file, true)));
+    try {
+      for (final byte[] record : records) {
+        out.writeInt(record.length);
+        out.write(record);
+      }
+      out.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  public List<byte[]> Read() throws IOException {
+    final ArrayList<byte[]> records = new ArrayList<byte[]>();
+    if (!file.exists())
+      return records;
+
+    long valid = 0;
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file)));
+    try {
+      while (true) {
+        final int length = in.readInt();
+        // A torn length prefix can read as anything, don't allocate for it
+        if (length < 0 || length > file.length() - valid - 4)
+          break;
+        final byte[] record = new byte[length];
+        in.readFully(record);
+        records.add(record);
+        valid += 4 + length;
+      }
+    } catch (final EOFException e) {
+    } finally {
+      in.close();
+    }
+
+    if (valid < file.length()) {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(valid);
+      } finally {
+        raf.close();
+      }
+    }
+
+    return records;
+  }
+
+  public void Reset() throws IOException {
+    if (file.exists() && !file.delete())
+      throw new IOException("Couldn't delete " + file);
+  }
+
+  public long Size() {
+    return file.length();
+  }
+}
@@ -20,26 +20,49 @@
 package me.wildn00b.extraauth.io;
 
 import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 
 import me.wildn00b.extraauth.ExtraAuth;
+import me.wildn00b.extraauth.io.SessionTable.Session;
+import net.drgnome.nbtlib.NBTLib;
 
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
+/**
+ * The messages of every file in the lang folder. The one named in the settings is the default and gets the built-in defaults written to it, the others fall back to it for
+ * missing messages. Players get the bundle matching their client locale.
+ */
 public class Language {
 
+  // How long after login the client may still be sending its locale
+  private static final long LOCALE_SETTLE = 5000;
+
+  private final Map<String, Map<String, Message>> bundles = new HashMap<String, Map<String, Message>>();
+  private final String defaultLanguage;
+  private final ExtraAuth extraauth;
   private final YamlConfiguration file;
+  // Bundle for each bare language code, like "de" for de-DE
+  private final Map<String, String> languages = new HashMap<String, String>();
+  // The default bundle
+  private final Map<String, Message> messages;
   private File path;
 
   public Language(ExtraAuth extraauth) {
+    this.extraauth = extraauth;
     file = new YamlConfiguration();
     final String partpath = extraauth.getDataFolder().getAbsolutePath()
         + File.separator + "lang" + File.separator;
 
     try {
-      path = new File(partpath + extraauth.Settings._("Language", "en-US")
+      path = new File(partpath + extraauth.Settings.Get().Language
           + ".yml");
       if (path.exists())
         file.load(path);
@@ -47,21 +70,157 @@ public class Language {
         extraauth.Log.log(Level.WARNING,
             "[ExtraAuth] Couldn't find language file, reverting to en-US");
         path = new File(partpath + "en-US.yml");
+        if (path.exists())
+          file.load(path);
       }
       addDefaults();
       file.save(path);
     } catch (final Exception e) {
       e.printStackTrace();
     }
+
+    defaultLanguage = name(path);
+    messages = compile(file, new HashMap<String, Message>());
+    bundles.put(defaultLanguage, messages);
+    languages.put(code(defaultLanguage), defaultLanguage);
+
+    final File[] files = path.getParentFile().listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.toLowerCase(Locale.ENGLISH).endsWith(".yml");
+      }
+    });
+    if (files != null)
+      for (final File other : files) {
+        final String name = name(other);
+        if (bundles.containsKey(name))
+          continue;
+        try {
+          final YamlConfiguration yml = new YamlConfiguration();
+          yml.load(other);
+          bundles.put(name,
+              compile(yml, new HashMap<String, Message>(messages)));
+          if (!languages.containsKey(code(name)))
+            languages.put(code(name), name);
+        } catch (final Exception e) {
+          e.printStackTrace();
+        }
+      }
+  }
+
+  // Normalizes file names and client locales alike: en_US, en-US.yml -> en-us
+  private static String name(File file) {
+    return normalize(file.getName().substring(0,
+        file.getName().length() - ".yml".length()));
+  }
+
+  private static String normalize(String language) {
+    return language.toLowerCase(Locale.ENGLISH).replace('_', '-');
+  }
+
+  private static String code(String language) {
+    final int dash = language.indexOf('-');
+    return dash == -1 ? language : language.substring(0, dash);
+  }
+
+  private static Map<String, Message> compile(YamlConfiguration yml,
+      Map<String, Message> into) {
+    for (final String key : yml.getKeys(true))
+      if (yml.isString(key))
+        into.put(key, new Message(yml.getString(key)));
+    return Collections.unmodifiableMap(into);
+  }
+
+  public String _(CommandSender sender, String path) {
+    return _(LanguageOf(sender), path);
   }
 
   public String _(String path) {
-    if (file.contains(path))
-      return file.getString(path);
+    final Message message = messages.get(path);
+    if (message != null)
+      return message.toString();
     else
       return path;
   }
 
+  /**
+   * @param language
+   *          A bundle name from {@link #LanguageOf(CommandSender)}, or a locale like en_US.
+   */
+  public String _(String language, String path) {
+    return Get(language, path).toString();
+  }
+
+  public Message Get(CommandSender sender, String path) {
+    return Get(LanguageOf(sender), path);
+  }
+
+  /**
+   * @return The compiled message, see {@link Message#Format(Object...)} and {@link Message#Prefixed(Object...)}.
+   */
+  public Message Get(String path) {
+    final Message message = messages.get(path);
+    if (message != null)
+      return message;
+    else
+      return new Message(path);
+  }
+
+  public Message Get(String language, String path) {
+    Map<String, Message> bundle = bundles.get(language);
+    if (bundle == null)
+      bundle = bundles.get(resolve(language));
+    final Message message = bundle.get(path);
+    if (message != null)
+      return message;
+    else
+      return new Message(path);
+  }
+
+  /**
+   * Picks the bundle for a player from their client locale and keeps it in the session. Everything else gets the default.
+   * <p>
+   * Until the client sends its settings the locale reads as the server's default, so a default picked in the first seconds of a session is checked once more after that.
+   * 
+   * @return The name of the bundle, like en-us.
+   */
+  public String LanguageOf(CommandSender sender) {
+    if (!(sender instanceof Player) || bundles.size() == 1)
+      return defaultLanguage;
+
+    final Session session = extraauth.Sessions.Get((Player) sender);
+    final long now = System.currentTimeMillis();
+    if (session != null && session.Language != null
+        && (session.LanguageFinal || now - session.LoginTime < LOCALE_SETTLE))
+      return session.Language;
+
+    String language = defaultLanguage;
+    try {
+      final Object handle = NBTLib.invokeCraftbukkit("entity.CraftPlayer",
+          sender, "getHandle", new Object[0]);
+      language = resolve((String) NBTLib.fetchMinecraftField("EntityPlayer",
+          handle, "locale"));
+    } catch (final Exception e) {
+    }
+
+    if (session != null) {
+      session.Language = language;
+      session.LanguageFinal = !language.equals(defaultLanguage)
+          || now - session.LoginTime >= LOCALE_SETTLE;
+    }
+    return language;
+  }
+
+  private String resolve(String locale) {
+    if (locale == null)
+      return defaultLanguage;
+    final String language = normalize(locale);
+    if (bundles.containsKey(language))
+      return language;
+    final String code = languages.get(code(language));
+    return code != null ? code : defaultLanguage;
+  }
+
   private void addDefaults() {
     final HashMap<String, String> list = new HashMap<String, String>();
 
@@ -74,6 +233,11 @@ public class Language {
 
     list.put("ExtraAuth.Converting", "Converting db to nbt...");
 
+    list.put("Vault.NotFound",
+        "Vault wasn't found, using Bukkit permissions instead.");
+    list.put("Vault.PermissionNotFound",
+        "Vault has no permission provider, using Bukkit permissions instead.");
+
     list.put("NeedToAuthenticate",
         "You need to authenticate to use that command");
 
@@ -81,6 +245,8 @@ public class Language {
 
     list.put("Command.Help", "[page number] - Shows this help.");
     list.put("Command.Reload", "- Reloads the ExtraAuth.");
+    list.put("Command.Reload.Stats",
+        "Permission cache: %HITS% hits, %MISSES% misses. Keys waiting to be checked: %QUEUE%.");
     list.put(
         "Command.Enable.TOTP.Help",
         "- Enabling a TOTP authentication on your account. (Uses the Google Authenticator app)");
@@ -104,12 +270,13 @@ public class Language {
     list.put("Command.Title",
         "ExtraAuth V%VERSION% Page %PAGE%/%MAXPAGE% by %AUTHOR%");
 
-    list.put("Command.Enable.Processing", "Creating a privatekey...");
-    list.put("Command.Enable.UrlFailed",
-        "Failed to create url, please try again later.");
     list.put(
-        "Command.Enable.TOTP.Success",
-        "Successfully enabled ExtraAuth on your account. Click on the following link and open the Google Authenticator app and scan the QR code. %URL%");
+        "Command.Enable.TOTP.Enrolled",
+        "Successfully enabled ExtraAuth on your account. Add it to the Google Authenticator app by scanning the QR code, or by entering the secret %SECRET%");
+    list.put("Command.Enable.TOTP.Map",
+        "The QR code has been put on a map in your inventory.");
+    list.put("Command.Enable.TOTP.InventoryFull",
+        "Your inventory is full, enter the secret in the app by hand instead.");
     list.put("Command.Enable.General.Success",
         "Successfully enabled ExtraAuth on your account.");
     list.put("Command.Enable.Other.General.Success",
@@ -124,6 +291,8 @@ public class Language {
     list.put("Command.Enable.InvalidMethod.Failed",
         "Invalid authentication method, please contact your server administrator.");
     list.put("Command.InvalidArgs", "Need for arguments!");
+    list.put("Command.Enable.Busy.Failed",
+        "The server is busy checking %QUEUE% other keys, please try again in a moment.");
     list.put("Command.Enable.Unknown.Failed",
         "Unknown error, please contact your server administrator.");
 
@@ -146,6 +315,10 @@ public class Language {
     list.put("Command.Auth.AlreadyAuthed.Failed",
         "You are already authenticated.");
     list.put("Command.Auth.WrongKey.Failed", "Wrong key. Please try again.");
+    list.put("Command.Auth.Throttled.Failed",
+        "Too many attempts. Please wait %SECONDS% seconds before trying again.");
+    list.put("Command.Auth.Busy.Failed",
+        "The server is busy checking %QUEUE% other keys, please try again in a moment.");
     list.put("Command.Auth.InvalidMethod.Failed",
         "Invalid authentication method, please contact your server administrator.");
     list.put("Command.Auth.Unknown.Failed",
@@ -0,0 +1,126 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import java.util.ArrayList;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A localized message, split once into literal text and %PLACEHOLDER% slots so sending it is just appending strings. Messages without placeholders are fully rendered up front.
+ */
+public final class Message {
+
+  public static final String PREFIX = ChatColor.YELLOW + "[ExtraAuth] "
+      + ChatColor.GOLD;
+
+  private final String[] literals;
+  private final String[] names;
+  private final String prefixed;
+  private final String text;
+
+  public Message(String text) {
+    this.text = text;
+    prefixed = PREFIX + text;
+
+    final ArrayList<String> literals = new ArrayList<String>();
+    final ArrayList<String> names = new ArrayList<String>();
+    int start = 0;
+    int open = text.indexOf('%');
+    while (open != -1) {
+      final int close = text.indexOf('%', open + 1);
+      if (close == -1)
+        break;
+      if (isName(text, open + 1, close)) {
+        literals.add(text.substring(start, open));
+        names.add(text.substring(open + 1, close));
+        start = close + 1;
+        open = text.indexOf('%', start);
+      } else
+        open = close;
+    }
+    literals.add(text.substring(start));
+
+    this.literals = literals.toArray(new String[literals.size()]);
+    this.names = names.toArray(new String[names.size()]);
+  }
+
+  private static boolean isName(String text, int from, int to) {
+    if (from == to)
+      return false;
+    for (int i = from; i < to; i++) {
+      final char c = text.charAt(i);
+      if (!(c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Fills in the placeholders.
+   * 
+   * @param args
+   *          Pairs of placeholder name (without the %) and value, like "URL", url. Placeholders without a value are left as they are.
+   * @return The message.
+   */
+  public String Format(Object... args) {
+    if (names.length == 0)
+      return text;
+    return fill(new StringBuilder(text.length() + 32), args).toString();
+  }
+
+  /**
+   * @return The message with the "[ExtraAuth] " prefix and colors.
+   */
+  public String Prefixed() {
+    return prefixed;
+  }
+
+  /**
+   * Like {@link #Format(Object...)}, with the "[ExtraAuth] " prefix and colors.
+   */
+  public String Prefixed(Object... args) {
+    if (names.length == 0)
+      return prefixed;
+    return fill(
+        new StringBuilder(PREFIX.length() + text.length() + 32).append(PREFIX),
+        args).toString();
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+
+  private StringBuilder fill(StringBuilder out, Object[] args) {
+    for (int i = 0; i < names.length; i++) {
+      out.append(literals[i]);
+      out.append(value(names[i], args));
+    }
+    return out.append(literals[names.length]);
+  }
+
+  private Object value(String name, Object[] args) {
+    for (int i = 0; i + 1 < args.length; i += 2)
+      if (name.equals(args[i]))
+        return args[i + 1];
+    return "%" + name + "%";
+  }
+}
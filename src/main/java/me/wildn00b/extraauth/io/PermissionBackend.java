@@ -0,0 +1,40 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Where permission checks go, picked when the plugin is enabled. See {@link Vault}.
+ */
+public interface PermissionBackend {
+
+  /**
+   * @return The name shown in the log, like "Vault".
+   */
+  public String GetName();
+
+  public boolean HasPermission(Player player, String permission);
+
+  /**
+   * @return If answers are worth caching, false when a check is already as cheap as a cache lookup.
+   */
+  public boolean ShouldCache();
+}
@@ -19,6 +19,12 @@
 
 package me.wildn00b.extraauth.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -28,37 +34,56 @@ import java.io.ObjectInputStream;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import me.wildn00b.extraauth.ExtraAuth;
+import me.wildn00b.extraauth.api.AuthFuture;
 import me.wildn00b.extraauth.api.AuthManager;
 import me.wildn00b.extraauth.api.AuthMethod;
 import me.wildn00b.extraauth.api.PlayerInformation;
 import me.wildn00b.extraauth.api.event.FailedReason;
-import net.drgnome.nbtlib.NBT;
+import me.wildn00b.extraauth.io.SessionTable.Session;
+import me.wildn00b.extraauth.io.SessionTokens.Token;
+import net.drgnome.nbtlib.NBTIO;
 import net.drgnome.nbtlib.Tag;
 
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
 public class PlayerStatusDB {
 
+  /**
+   * Appends the queued changes to the journal in the background, and folds the journal into a new snapshot once it gets too big.
+   */
+  class Persister implements Runnable {
+    @Override
+    public void run() {
+      Flush();
+    }
+  }
+
+  /**
+   * One account. The fields are volatile since records are read without locking, from the async chat thread and scheduler threads as well as the main thread.
+   */
   public class playerstatus {
-    public boolean Authed;
-    public String LastIP;
-    public long LastOnline;
-    public AuthMethod Method;
-    public String Player;
-    public String PrivateKey;
+    public volatile String LastIP;
+    public volatile long LastOnline;
+    public volatile AuthMethod Method;
+    public volatile String Player;
+    public volatile String PrivateKey;
 
     public playerstatus() {
 
     }
 
-    public playerstatus(String player, boolean authed, long lastOnline,
-        String lastIP, AuthMethod method) {
+    public playerstatus(String player, long lastOnline, String lastIP,
+        AuthMethod method) {
       this.Player = player;
-      this.Authed = authed;
       this.LastOnline = lastOnline;
       this.LastIP = lastIP;
       this.PrivateKey = "";
@@ -83,11 +108,19 @@ public class PlayerStatusDB {
       Method = AuthManager.GetAuthMethod((String) player.get("Method").get());
     }
 
+    public void readRecord(DataInput in) throws IOException {
+      Player = in.readUTF();
+      LastOnline = in.readLong();
+      LastIP = in.readUTF();
+      PrivateKey = in.readUTF();
+      Method = AuthManager.GetAuthMethod(in.readUTF());
+    }
+
     @Override
     public String toString() {
-      return "playerstatus [Player=" + Player + ", Authed=" + Authed
-          + ", LastOnline=" + LastOnline + ", LastIP=" + LastIP
-          + ", PrivateKey=" + PrivateKey + ", Method=" + Method + "]";
+      return "playerstatus [Player=" + Player + ", LastOnline=" + LastOnline
+          + ", LastIP=" + LastIP + ", PrivateKey=" + PrivateKey + ", Method="
+          + Method + "]";
     }
 
     private void writeObject(Map<String, Tag> out) throws Exception {
@@ -103,12 +136,33 @@ public class PlayerStatusDB {
 
       out.put(Player, Tag.newCompound(map));
     }
+
+    private void writeRecord(DataOutput out) throws IOException {
+      out.writeUTF(Player);
+      out.writeLong(LastOnline);
+      out.writeUTF(LastIP == null ? "" : LastIP);
+      out.writeUTF(PrivateKey == null ? "" : PrivateKey);
+      out.writeUTF(Method.GetName());
+    }
   }
 
   public static final int CURRENT_VERSION = 2;
-  private ArrayList<playerstatus> db = new ArrayList<playerstatus>();
+  private static final byte RECORD_PUT = 1;
+  private static final byte RECORD_REMOVE = 2;
+
+  private volatile ConcurrentHashMap<String, playerstatus> db = new ConcurrentHashMap<String, playerstatus>();
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
   private final ExtraAuth extraauth;
   private final File file;
+  private final Journal journal;
+  // Held while changing db and queueing the journal record for it, so the
+  // records are queued in the same order as the changes. Readers don't take it
+  private final Object lock = new Object();
+  private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<byte[]>();
+  private BukkitTask persister = null;
+  // Records that failed to be appended, retried first on the next Flush. Guarded by writeLock
+  private final ArrayList<byte[]> unwritten = new ArrayList<byte[]>();
+  private final Object writeLock = new Object();
 
   public PlayerStatusDB(ExtraAuth extraAuth) {
     this.extraauth = extraAuth;
@@ -119,37 +173,81 @@ public class PlayerStatusDB {
 
     file = new File(extraAuth.getDataFolder().getAbsolutePath()
         + File.separator + "PlayerStatusDB.nbt");
+    journal = new Journal(new File(extraAuth.getDataFolder()
+        .getAbsolutePath() + File.separator + "PlayerStatusDB.journal"));
 
     Load();
+
+    final long interval = Math.max(1,
+        extraauth.Settings.Get().SaveInterval / 50);
+    persister = extraauth.getServer().getScheduler()
+        .runTaskTimerAsynchronously(extraauth, new Persister(), interval,
+            interval);
   }
 
+  /**
+   * @deprecated Enabling may block, use {@link #AddAsync(String, AuthMethod, Object...)}.
+   */
+  @Deprecated
   public FailedReason Add(String player, AuthMethod method, Object... args) {
     if (method == null)
       return FailedReason.INVALID_METHOD;
 
-    if (Contains(player))
+    final playerstatus ps = new playerstatus(player,
+        System.currentTimeMillis(), "", method);
+    if (db.putIfAbsent(key(player), ps) != null)
       return FailedReason.ALREADY_REGISTERED;
+    extraauth.Sessions.SetAuthed(player, true);
 
-    if (db.add(new playerstatus(player, true, System.currentTimeMillis(), "",
-        method))) {
-      final FailedReason fr = method.OnEnable(new PlayerInformation(player),
-          args);
-      if (fr != FailedReason.SUCCESSFULL) {
-        Remove(player);
-        return fr;
-      }
-      Save();
-      return FailedReason.SUCCESSFULL;
-    } else
-      return FailedReason.UNKNOWN;
+    final FailedReason fr = method.OnEnable(new PlayerInformation(player),
+        args);
+    if (fr != FailedReason.SUCCESSFULL) {
+      rollback(ps);
+      return fr;
+    }
+    Update(ps);
+    return FailedReason.SUCCESSFULL;
   }
 
+  /**
+   * Like {@link #Add(String, AuthMethod, Object...)}, but lets the method finish enabling on another thread. The account is removed again if enabling fails.
+   */
+  public AuthFuture AddAsync(final String player, AuthMethod method,
+      Object... args) {
+    if (method == null)
+      return AuthFuture.Completed(FailedReason.INVALID_METHOD);
+
+    final playerstatus ps = new playerstatus(player,
+        System.currentTimeMillis(), "", method);
+    if (db.putIfAbsent(key(player), ps) != null)
+      return AuthFuture.Completed(FailedReason.ALREADY_REGISTERED);
+    extraauth.Sessions.SetAuthed(player, true);
+
+    final AuthFuture result = new AuthFuture();
+    method.OnEnableAsync(new PlayerInformation(player), args).OnComplete(
+        new AuthFuture.Callback() {
+          @Override
+          public void Done(FailedReason reason) {
+            if (reason != FailedReason.SUCCESSFULL)
+              rollback(ps);
+            else
+              Update(ps);
+            result.Complete(reason);
+          }
+        });
+    return result;
+  }
+
+  /**
+   * @deprecated Verifying may block, use {@link #AuthAsync(Player, Object...)}.
+   */
+  @Deprecated
   public FailedReason Auth(Player player, Object... args) {
     final playerstatus p = Get(player.getName());
     if (p == null)
       return FailedReason.NOT_REGISTERED;
 
-    if (p.Authed)
+    if (extraauth.Sessions.IsAuth(player))
       return FailedReason.ALREADY_AUTHED;
 
     if (p.Method == null)
@@ -158,73 +256,166 @@ public class PlayerStatusDB {
     return p.Method.Authenticate(new PlayerInformation(player.getName()), args);
   }
 
-  public void Connecting(Player player, String IP) {
-    if (Contains(player.getName())) {
-      final playerstatus ps = Get(player.getName());
+  /**
+   * Like {@link #Auth(Player, Object...)}, but lets the method verify on another thread.
+   */
+  public AuthFuture AuthAsync(Player player, Object... args) {
+    final playerstatus p = Get(player.getName());
+    if (p == null)
+      return AuthFuture.Completed(FailedReason.NOT_REGISTERED);
+
+    if (extraauth.Sessions.IsAuth(player))
+      return AuthFuture.Completed(FailedReason.ALREADY_AUTHED);
 
-      extraauth.Log.log(Level.SEVERE, ""
-          + (System.currentTimeMillis() - ps.LastOnline) + "<"
-          + (extraauth.Settings._D("ReauthenticateTimeout", 5) * 1000 * 60));
+    if (p.Method == null)
+      return AuthFuture.Completed(FailedReason.INVALID_METHOD);
 
-      if (ps.LastIP != null
-          && ps.LastIP.equalsIgnoreCase(IP)
-          && (System.currentTimeMillis() - ps.LastOnline) < (extraauth.Settings
-              ._D("ReauthenticateTimeout", 5) * 1000 * 60))
-        ps.Authed = true;
+    return p.Method.AuthenticateAsync(new PlayerInformation(player.getName()),
+        args);
+  }
+
+  /**
+   * Opens the session of a player that has joined, using the decision from {@link #Preconnecting(String, String)} if there is one. The player's resume token is used up
+   * either way.
+   * 
+   * @param client
+   *          The hostname the client connected through, or null if the player was already online
+   */
+  public void Connecting(Player player, String IP, String client) {
+    Boolean authed = extraauth.Sessions.TakePrefetched(player.getName(), IP,
+        client);
+    if (authed == null)
+      authed = resume(player.getName(), IP, client);
+    extraauth.Tokens.Remove(player.getName());
+    extraauth.Sessions.Open(player, IP, client, authed);
+  }
+
+  /**
+   * Decides whether a connecting player has to authenticate. Called on the login thread, before the player has joined.
+   */
+  public void Preconnecting(String player, String IP) {
+    if (Get(player) == null) {
+      extraauth.Sessions.Prefetch(player, IP, true, null);
+      return;
+    }
+    // The hostname isn't known yet, it's checked against the token on join
+    final Token token = extraauth.Tokens.Get(player);
+    extraauth.Sessions.Prefetch(player, IP,
+        token != null && token.Matches(IP, null), token != null ? token.Client
+            : null);
+  }
 
-      db.add(ps);
+  /**
+   * Stops the background writer and writes any pending changes before returning.
+   */
+  public void Close() {
+    if (persister != null) {
+      persister.cancel();
+      persister = null;
     }
+    Flush();
   }
 
   public boolean Contains(String name) {
-    for (final playerstatus ps : db)
-      if (ps.Player.equalsIgnoreCase(name))
-        return true;
-    return false;
+    return name != null && db.containsKey(key(name));
   }
 
   public void Disconnect(Player player) {
-    if (Contains(player.getName())) {
-      final playerstatus ps = Get(player.getName());
-      db.remove(ps);
-
-      ps.Authed = false;
+    final Session session = extraauth.Sessions.Close(player);
+    final playerstatus ps = Get(player.getName());
+    if (ps != null) {
       ps.LastOnline = System.currentTimeMillis();
-      ps.LastIP = player.getAddress().getAddress().getHostAddress();
+      if (session != null)
+        ps.LastIP = session.IP;
+      else
+        ps.LastIP = player.getAddress().getAddress().getHostAddress();
+      Update(ps);
+      if (ps.Method != null)
+        ps.Method.OnLogout(player);
+
+      if (session != null && session.Authed)
+        extraauth.Tokens.Issue(ps.Player, ps.LastIP, session.Client);
+    }
+  }
 
-      db.add(ps);
+  /**
+   * Appends the queued changes to the journal, and writes a new snapshot if {@link #Save()} was called or the journal has grown past JournalMaxSize.
+   */
+  public void Flush() {
+    synchronized (writeLock) {
+      final ArrayList<byte[]> records = new ArrayList<byte[]>(unwritten);
+      unwritten.clear();
+      Map<String, Tag> players = null;
+
+      // Drained and snapshotted under the same lock as the changes, so the
+      // snapshot holds exactly the drained records and nothing queued later
+      synchronized (lock) {
+        byte[] record;
+        while ((record = pending.poll()) != null)
+          records.add(record);
+
+        long size = journal.Size();
+        for (final byte[] r : records)
+          size += 4 + r.length;
+
+        if (dirty.getAndSet(false)
+            || size > extraauth.Settings.Get().JournalMaxSize)
+          players = snapshot();
+      }
 
-      Save();
+      try {
+        journal.Append(records);
+      } catch (final IOException e) {
+        unwritten.addAll(records);
+        if (players != null)
+          dirty.set(true);
+        e.printStackTrace();
+        return;
+      }
+
+      if (players != null)
+        try {
+          writeSnapshot(players);
+          journal.Reset();
+        } catch (final Exception e) {
+          dirty.set(true);
+          e.printStackTrace();
+        }
     }
   }
 
   public playerstatus Get(String name) {
-    for (final playerstatus ps : db)
-      if (ps.Player.equalsIgnoreCase(name))
-        return ps;
-    return null;
+    if (name == null)
+      return null;
+    return db.get(key(name));
   }
 
   public boolean IsAuth(Player player) {
-    if (Contains(player.getName()))
-      return Get(player.getName()).Authed;
-    else
-      return true;
+    return extraauth.Sessions.IsAuth(player);
+  }
+
+  public boolean IsAuth(String player) {
+    final Session session = extraauth.Sessions.Get(player);
+    return session != null && session.Authed;
   }
 
   public void Load() {
-    try {
-      final FileInputStream in = new FileInputStream(file);
-      final Map<String, Tag> nbt = NBT.NBTToMap(NBT.loadNBT(in));
+    final ConcurrentHashMap<String, playerstatus> loaded = new ConcurrentHashMap<String, playerstatus>(
+        db);
 
-      db = new ArrayList<PlayerStatusDB.playerstatus>();
+    try {
+      final FileInputStream in = new FileInputStream(file.exists() ? file
+          : temp());
+      final Map<String, Tag> nbt = NBTIO.read(in);
 
       final Map<String, Tag> players = (Map<String, Tag>) nbt.get("Players")
           .get();
 
+      loaded.clear();
       for (final String player : players.keySet())
         try {
-          db.add(new playerstatus(player, players));
+          final playerstatus ps = new playerstatus(player, players);
+          loaded.put(key(ps.Player), ps);
         } catch (final Exception ee) {
         }
 
@@ -233,6 +424,15 @@ public class PlayerStatusDB {
     } catch (final Exception e) {
       e.printStackTrace();
     }
+
+    try {
+      for (final byte[] record : journal.Read())
+        replay(loaded, record);
+    } catch (final IOException e) {
+      e.printStackTrace();
+    }
+
+    db = loaded;
   }
 
   public FailedReason Remove(String player) {
@@ -240,39 +440,39 @@ public class PlayerStatusDB {
   }
 
   public FailedReason Remove(String player, boolean needToAuth) {
-    if (!Contains(player))
+    final playerstatus ps = Get(player);
+    if (ps == null)
       return FailedReason.NOT_REGISTERED;
-    if (needToAuth && !Get(player).Authed)
+    if (needToAuth && !IsAuth(player))
       return FailedReason.NEED_TO_AUTHENTICATE;
 
-    db.remove(Get(player));
-
-    Save();
+    synchronized (lock) {
+      if (!db.remove(key(player), ps))
+        return FailedReason.NOT_REGISTERED;
+      log(RECORD_REMOVE, player);
+    }
+    if (ps.Method != null)
+      ps.Method.OnDisable(ps.Player);
+    extraauth.Sessions.SetAuthed(player, true);
 
     return FailedReason.SUCCESSFULL;
   }
 
+  /**
+   * Makes the next Flush write a full snapshot and empty the journal. Done on reload, and on shutdown before the last Flush.
+   */
   public void Save() {
-    extraauth.Log.log(Level.INFO, extraauth.Lang._("ExtraAuth.Saving"));
-
-    try {
-      final FileOutputStream out = new FileOutputStream(file);
-      final Map<String, Tag> nbt = new HashMap<String, Tag>();
-      final Map<String, Tag> players = new HashMap<String, Tag>();
-
-      for (final playerstatus ps : db)
-        try {
-          ps.writeObject(players);
-        } catch (final Exception ee) {
-        }
-
-      nbt.put("Players", Tag.newCompound(players));
+    dirty.set(true);
+  }
 
-      NBT.saveNBT(out, NBT.tagToNBT("root", Tag.newCompound(nbt)));
-      out.flush();
-      out.close();
-    } catch (final Exception e) {
-      e.printStackTrace();
+  /**
+   * Queues the current state of the account to be appended to the journal, call this after changing a record. Does nothing if the account was removed meanwhile, so a change
+   * finishing on another thread can't bring it back.
+   */
+  public void Update(playerstatus ps) {
+    synchronized (lock) {
+      if (db.get(key(ps.Player)) == ps)
+        log(ps);
     }
   }
 
@@ -298,7 +498,7 @@ public class PlayerStatusDB {
       for (int i = 0; i < size; i++) {
         ps = new playerstatus();
         ps.Player = in.readUTF();
-        ps.Authed = in.readBoolean();
+        in.readBoolean(); // Authed, now kept in the SessionTable
         ps.LastOnline = in.readLong();
         ps.LastIP = in.readUTF();
         ps.PrivateKey = in.readUTF();
@@ -312,7 +512,7 @@ public class PlayerStatusDB {
         else
           continue;
 
-        db.add(ps);
+        put(ps);
       }
 
       in.close();
@@ -321,6 +521,118 @@ public class PlayerStatusDB {
     }
   }
 
+  /**
+   * A player has to authenticate unless they have a resume token for this IP and client.
+   */
+  private boolean resume(String player, String IP, String client) {
+    if (Get(player) == null)
+      return true;
+    final Token token = extraauth.Tokens.Get(player);
+    return token != null && token.Matches(IP, client);
+  }
+
+  /**
+   * Normalizes a player name into the key of the index, keeping lookups case-insensitive.
+   */
+  private String key(String name) {
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+  private void log(byte type, String player) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte(type);
+      out.writeUTF(player);
+    } catch (final IOException e) {
+      return;
+    }
+    pending.add(bytes.toByteArray());
+  }
+
+  private void log(playerstatus ps) {
+    if (ps.Method == null)
+      return;
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte(RECORD_PUT);
+      ps.writeRecord(out);
+    } catch (final IOException e) {
+      return;
+    }
+    pending.add(bytes.toByteArray());
+  }
+
+  /**
+   * Takes back a record that was added but failed to enable. Unlike {@link #Remove(String)} it doesn't need the player to be online and authenticated.
+   */
+  private void rollback(playerstatus ps) {
+    synchronized (lock) {
+      if (db.remove(key(ps.Player), ps))
+        log(RECORD_REMOVE, ps.Player);
+    }
+  }
+
+  private void put(playerstatus ps) {
+    db.put(key(ps.Player), ps);
+  }
+
+  private void replay(Map<String, playerstatus> map, byte[] record)
+      throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        record));
+    final byte type = in.readByte();
+
+    if (type == RECORD_PUT) {
+      final playerstatus ps = new playerstatus();
+      ps.readRecord(in);
+      map.put(key(ps.Player), ps);
+    } else if (type == RECORD_REMOVE)
+      map.remove(key(in.readUTF()));
+  }
+
+  private Map<String, Tag> snapshot() {
+    final Map<String, Tag> players = new HashMap<String, Tag>();
+    for (final playerstatus ps : db.values())
+      try {
+        ps.writeObject(players);
+      } catch (final Exception ee) {
+      }
+    return players;
+  }
+
+  private File temp() {
+    return new File(file.getPath() + ".tmp");
+  }
+
+  private void writeSnapshot(Map<String, Tag> players) throws Exception {
+    extraauth.Log.log(Level.INFO, extraauth.Lang._("ExtraAuth.Saving"));
+
+    final File temp = temp();
+    final Map<String, Tag> nbt = new HashMap<String, Tag>();
+    nbt.put("Players", Tag.newCompound(players));
+
+    // NBTIO closes the stream it writes to, so encode first and sync after
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NBTIO.write(bytes, "root", Tag.newCompound(nbt));
+
+    final FileOutputStream out = new FileOutputStream(temp);
+    try {
+      bytes.writeTo(out);
+      out.flush();
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+
+    // renameTo is atomic on POSIX but won't overwrite on Windows. If the
+    // fallback is interrupted after the delete, Load reads the .tmp instead
+    if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+      throw new IOException("Couldn't move " + temp + " to " + file);
+  }
+
   private void copyFile(File sourceFile, File destFile) throws IOException {
     if (!destFile.exists())
       destFile.createNewFile();
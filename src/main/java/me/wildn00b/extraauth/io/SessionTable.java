@@ -0,0 +1,227 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.wildn00b.extraauth.ExtraAuth;
+
+import org.bukkit.entity.Player;
+
+/**
+ * In-memory table of the players that are currently online. Nothing in here is persisted, the account records in {@link PlayerStatusDB} are only touched on login, logout and registration.
+ */
+public class SessionTable {
+
+  public static class Session {
+    /**
+     * True when the player has authenticated, or has no account to authenticate against. Change it through {@link SessionTable#SetAuthed(String, boolean)}, so the count of
+     * unauthenticated players stays right.
+     */
+    public volatile boolean Authed;
+    /**
+     * The hostname the client connected through, null if the player was already online when ExtraAuth was enabled.
+     */
+    public final String Client;
+    public final String IP;
+    /**
+     * The language bundle picked from the client locale, null until it's first needed.
+     */
+    public volatile String Language;
+    /**
+     * False while Language might still change, see {@link me.wildn00b.extraauth.io.Language#LanguageOf(org.bukkit.command.CommandSender)}.
+     */
+    public volatile boolean LanguageFinal;
+    public final long LoginTime;
+    public final String Player;
+    // The login message counts as the first reminder
+    private final AtomicLong lastReminder;
+
+    public Session(String player, String IP, String client, boolean authed) {
+      this.Player = player;
+      this.IP = IP;
+      this.Client = client;
+      this.Authed = authed;
+      this.LoginTime = System.currentTimeMillis();
+      this.lastReminder = new AtomicLong(LoginTime);
+    }
+
+    /**
+     * Rate limits the freeze message. Safe to call from any thread, only one caller gets true per interval.
+     * 
+     * @param interval
+     *          The minimum time between two reminders, in milliseconds
+     * @return True if a reminder should be sent now.
+     */
+    public boolean Remind(long interval) {
+      final long now = System.currentTimeMillis();
+      final long last = lastReminder.get();
+      return now - last >= interval && lastReminder.compareAndSet(last, now);
+    }
+
+    @Override
+    public String toString() {
+      return "Session [Player=" + Player + ", Authed=" + Authed + ", IP=" + IP
+          + ", LoginTime=" + LoginTime + "]";
+    }
+  }
+
+  /**
+   * A login decision made before the player object exists, see {@link SessionTable#Prefetch(String, String, boolean, String)}.
+   */
+  private static final class Prefetched {
+    public final boolean Authed;
+    public final String Client;
+    public final String IP;
+    public final long Time;
+
+    public Prefetched(String IP, boolean authed, String client) {
+      this.IP = IP;
+      this.Authed = authed;
+      this.Client = client;
+      this.Time = System.currentTimeMillis();
+    }
+  }
+
+  // Anything older was for a login that never finished
+  private static final long PREFETCH_TIMEOUT = 60 * 1000;
+
+  private final ExtraAuth extraauth;
+  private final ConcurrentHashMap<String, Prefetched> prefetched = new ConcurrentHashMap<String, Prefetched>();
+  private final ConcurrentHashMap<UUID, Session> sessions = new ConcurrentHashMap<UUID, Session>();
+  // Sessions that still have to authenticate, only changed while holding this
+  private volatile int unauthed = 0;
+
+  public SessionTable(ExtraAuth extraauth) {
+    this.extraauth = extraauth;
+  }
+
+  public Session Close(Player player) {
+    final Session session;
+    synchronized (this) {
+      session = sessions.remove(player.getUniqueId());
+      if (session != null && !session.Authed)
+        unauthed--;
+    }
+    extraauth.UpdateFreezeListener();
+    return session;
+  }
+
+  /**
+   * Drops the prefetched decision for a login that was refused after it was made.
+   */
+  public void Discard(String player) {
+    prefetched.remove(player.toLowerCase(Locale.ENGLISH));
+  }
+
+  public Session Get(Player player) {
+    return sessions.get(player.getUniqueId());
+  }
+
+  public Session Get(String player) {
+    final Player obj = extraauth.getServer().getPlayerExact(player);
+    if (obj == null)
+      return null;
+    return Get(obj);
+  }
+
+  /**
+   * Called for every event that can be frozen. When everyone online has authenticated, which is the normal case, this is a single read.
+   */
+  public boolean IsAuth(Player player) {
+    if (unauthed == 0)
+      return true;
+    final Session session = sessions.get(player.getUniqueId());
+    return session == null || session.Authed;
+  }
+
+  public Session Open(Player player, String IP, String client, boolean authed) {
+    final Session session = new Session(player.getName(), IP, client, authed);
+    synchronized (this) {
+      final Session old = sessions.put(player.getUniqueId(), session);
+      if (old != null && !old.Authed)
+        unauthed--;
+      if (!authed)
+        unauthed++;
+    }
+    extraauth.UpdateFreezeListener();
+    return session;
+  }
+
+  /**
+   * Stores the login decision for a player that is still connecting. Safe to call from the login threads, it's picked up by {@link #TakePrefetched(String, String, String)} when the
+   * player joins.
+   * 
+   * @param client
+   *          If not null, the decision only holds when the player joins through this hostname
+   */
+  public void Prefetch(String player, String IP, boolean authed, String client) {
+    if (prefetched.size() > 64) {
+      final long stale = System.currentTimeMillis() - PREFETCH_TIMEOUT;
+      for (final Iterator<Prefetched> it = prefetched.values().iterator(); it
+          .hasNext();)
+        if (it.next().Time < stale)
+          it.remove();
+    }
+    prefetched.put(player.toLowerCase(Locale.ENGLISH), new Prefetched(IP,
+        authed, client));
+  }
+
+  public void SetAuthed(String player, boolean authed) {
+    final Session session = Get(player);
+    if (session == null)
+      return;
+    synchronized (this) {
+      if (session.Authed == authed)
+        return;
+      session.Authed = authed;
+      unauthed += authed ? -1 : 1;
+    }
+    extraauth.UpdateFreezeListener();
+  }
+
+  /**
+   * @return The prefetched decision for the player, or null if there is none for this IP or it's too old.
+   */
+  public Boolean TakePrefetched(String player, String IP, String client) {
+    final Prefetched p = prefetched.remove(player.toLowerCase(Locale.ENGLISH));
+    if (p == null || !p.IP.equals(IP)
+        || System.currentTimeMillis() - p.Time > PREFETCH_TIMEOUT)
+      return null;
+    return p.Authed
+        && (p.Client == null || client == null || p.Client
+            .equalsIgnoreCase(client));
+  }
+
+  public int Size() {
+    return sessions.size();
+  }
+
+  /**
+   * @return How many online players still have to authenticate.
+   */
+  public int Unauthed() {
+    return unauthed;
+  }
+}
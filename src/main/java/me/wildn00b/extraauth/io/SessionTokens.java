@@ -0,0 +1,202 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import me.wildn00b.extraauth.ExtraAuth;
+
+/**
+ * Lets a player who was authenticated skip /auth when they come back soon, from the same IP and client. A token is issued when an authenticated player leaves, is valid for
+ * ReauthenticateTimeout and can be used once. The cache holds at most SessionTokenLimit tokens, dropping the oldest first. With SessionTokenPersist the tokens are saved when
+ * the plugin is disabled, so a quick restart doesn't make everyone authenticate again.
+ */
+public class SessionTokens {
+
+  public static final class Token {
+    /**
+     * The hostname the client connected through, or null if it isn't known.
+     */
+    public final String Client;
+    public final long Expires;
+    public final String IP;
+
+    public Token(String IP, String client, long expires) {
+      this.IP = IP;
+      this.Client = client;
+      this.Expires = expires;
+    }
+
+    /**
+     * @param client
+     *          The client's hostname, or null if the player was already online (after a reload)
+     */
+    public boolean Matches(String IP, String client) {
+      return this.IP.equals(IP)
+          && (Client == null || client == null || Client
+              .equalsIgnoreCase(client));
+    }
+  }
+
+  private static final int VERSION = 1;
+
+  private final ExtraAuth extraauth;
+  private final File file;
+  // Issue order. That isn't expiry order once ReauthenticateTimeout has been
+  // changed, a token keeps the lifetime it was issued with, so expiry is
+  // always checked on the token itself
+  private final LinkedHashMap<String, Token> tokens = new LinkedHashMap<String, Token>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Token> eldest) {
+      return size() > extraauth.Settings.Get().SessionTokenLimit;
+    }
+  };
+
+  public SessionTokens(ExtraAuth extraauth) {
+    this.extraauth = extraauth;
+    file = new File(extraauth.getDataFolder().getAbsolutePath()
+        + File.separator + "SessionTokens.dat");
+    Load();
+  }
+
+  /**
+   * @return The player's token, or null if there is none or it has expired.
+   */
+  public synchronized Token Get(String player) {
+    final String key = player.toLowerCase(Locale.ENGLISH);
+    final Token token = tokens.get(key);
+    if (token != null && token.Expires <= System.currentTimeMillis()) {
+      tokens.remove(key);
+      return null;
+    }
+    return token;
+  }
+
+  public synchronized void Issue(String player, String IP, String client) {
+    final String key = player.toLowerCase(Locale.ENGLISH);
+    tokens.remove(key);
+    // Make room from expired tokens anywhere before dropping a valid one
+    if (tokens.size() >= extraauth.Settings.Get().SessionTokenLimit) {
+      final long now = System.currentTimeMillis();
+      for (final Iterator<Token> it = tokens.values().iterator(); it.hasNext();)
+        if (it.next().Expires <= now)
+          it.remove();
+    }
+    tokens.put(key, new Token(IP, client, System.currentTimeMillis()
+        + extraauth.Settings.Get().ReauthenticateTimeout));
+  }
+
+  public void Load() {
+    if (!file.exists())
+      return;
+
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file)));
+      try {
+        if (in.readInt() == VERSION) {
+          final long now = System.currentTimeMillis();
+          final int count = in.readInt();
+          synchronized (this) {
+            for (int i = 0; i < count; i++) {
+              final String player = in.readUTF();
+              final String IP = in.readUTF();
+              final String client = in.readBoolean() ? in.readUTF() : null;
+              final long expires = in.readLong();
+              if (expires > now)
+                tokens.put(player, new Token(IP, client, expires));
+            }
+          }
+        }
+      } finally {
+        in.close();
+      }
+    } catch (final Exception e) {
+      e.printStackTrace();
+    }
+
+    // Tokens are single use, they mustn't come back after a crash
+    file.delete();
+  }
+
+  /**
+   * Writes the tokens that are still valid, if SessionTokenPersist is on.
+   */
+  public void Save() {
+    if (!extraauth.Settings.Get().SessionTokenPersist)
+      return;
+
+    try {
+      final DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        synchronized (this) {
+          final long now = System.currentTimeMillis();
+          int count = 0;
+          for (final Token token : tokens.values())
+            if (token.Expires > now)
+              count++;
+
+          out.writeInt(VERSION);
+          out.writeInt(count);
+          for (final Entry<String, Token> entry : tokens.entrySet()) {
+            final Token token = entry.getValue();
+            if (token.Expires <= now)
+              continue;
+            out.writeUTF(entry.getKey());
+            out.writeUTF(token.IP);
+            out.writeBoolean(token.Client != null);
+            if (token.Client != null)
+              out.writeUTF(token.Client);
+            out.writeLong(token.Expires);
+          }
+        }
+      } finally {
+        out.close();
+      }
+    } catch (final Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  public synchronized int Size() {
+    return tokens.size();
+  }
+
+  /**
+   * Removes the player's token, it's used up once they have joined.
+   */
+  public synchronized void Remove(String player) {
+    tokens.remove(player.toLowerCase(Locale.ENGLISH));
+  }
+}
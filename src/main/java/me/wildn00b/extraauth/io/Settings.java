@@ -30,23 +30,74 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 public class Settings {
 
-  private final YamlConfiguration file;
-  private File path;
+  /**
+   * The settings that are read on hot paths, parsed once when the config is loaded. Durations are in milliseconds and sizes in bytes.
+   */
+  public static final class Snapshot {
+    public final boolean BlockChat;
+    public final long FreezeMessageInterval;
+    public final boolean FreezePlayer;
+    public final String PermissionBackend;
+    public final long PermissionCacheTTL;
+    public final long JournalMaxSize;
+    public final int KeyHashIterations;
+    public final int KeyHashQueueLimit;
+    public final String Language;
+    public final long ReauthenticateTimeout;
+    public final long SaveInterval;
+    public final String Servername;
+    public final int SessionTokenLimit;
+    public final boolean SessionTokenPersist;
+    public final int ThrottleBurst;
+    public final int ThrottleIPBurst;
+    public final long ThrottleLockout;
+    public final long ThrottleLockoutMax;
+    public final long ThrottleRefill;
+    public final boolean TOTPQRMap;
+    public final int TOTPWindow;
+
+    private Snapshot(Settings settings) {
+      BlockChat = settings._B("BlockChat", true);
+      FreezeMessageInterval = (long) (settings._D(
+          "FreezeMessageInterval", 2) * 1000);
+      FreezePlayer = settings._B("FreezePlayer", true);
+      PermissionBackend = String.valueOf(settings._("PermissionBackend",
+          "auto"));
+      PermissionCacheTTL = (long) (settings._D("PermissionCacheTTL",
+          30) * 1000);
+      JournalMaxSize = (long) (settings._D("JournalMaxSize", 512) * 1024);
+      KeyHashIterations = Math.max(1000, (int) settings._D(
+          "KeyHashIterations", 10000));
+      KeyHashQueueLimit = Math.max(1, (int) settings._D("KeyHashQueueLimit",
+          64));
+      Language = String.valueOf(settings._("Language", "en-US"));
+      ReauthenticateTimeout = (long) (settings._D("ReauthenticateTimeout",
+          5) * 1000 * 60);
+      SaveInterval = (long) (settings._D("SaveInterval", 10) * 1000);
+      Servername = String.valueOf(settings._("Servername", "Unknown server"));
+      SessionTokenLimit = Math.max(1, (int) settings._D("SessionTokenLimit",
+          1000));
+      SessionTokenPersist = settings._B("SessionTokenPersist", true);
+      ThrottleBurst = Math.max(1, (int) settings._D("ThrottleBurst", 5));
+      ThrottleIPBurst = Math.max(1, (int) settings._D("ThrottleIPBurst", 15));
+      ThrottleLockout = (long) (settings._D("ThrottleLockout", 60) * 1000);
+      ThrottleLockoutMax = Math.max(ThrottleLockout, (long) (settings._D(
+          "ThrottleLockoutMax", 3600) * 1000));
+      ThrottleRefill = Math.max(1,
+          (long) (settings._D("ThrottleRefill", 30) * 1000));
+      TOTPQRMap = settings._B("TOTPQRMap", true);
+      TOTPWindow = Math.max(0, (int) settings._D("TOTPWindow", 1));
+    }
+  }
 
-  public Settings(ExtraAuth extraauth) {
-    file = new YamlConfiguration();
+  private volatile YamlConfiguration file;
+  private final File path;
+  private volatile Snapshot snapshot;
 
-    try {
-      path = new File(extraauth.getDataFolder().getAbsolutePath()
-          + File.separator + "config.yml");
-      if (path.exists())
-        file.load(path);
-
-      addDefaults();
-      file.save(path);
-    } catch (final Exception e) {
-      e.printStackTrace();
-    }
+  public Settings(ExtraAuth extraauth) {
+    path = new File(extraauth.getDataFolder().getAbsolutePath()
+        + File.separator + "config.yml");
+    Reload();
   }
 
   public Object _(String path, Object value) {
@@ -55,6 +106,14 @@ public class Settings {
     return file.get(path);
   }
 
+  public boolean _B(String path, boolean value) {
+    final Object obj = _(path, value);
+    if (obj instanceof Boolean)
+      return (Boolean) obj;
+    else
+      return value;
+  }
+
   public double _D(String path, double value) {
     final Object obj = _(path, value);
     if (obj instanceof Double)
@@ -65,10 +124,40 @@ public class Settings {
       return value;
   }
 
+  /**
+   * @return The typed settings, replaced as a whole by {@link #Reload()} and {@link #Set(String, Object)}.
+   */
+  public Snapshot Get() {
+    return snapshot;
+  }
+
+  /**
+   * Reads config.yml again and swaps in a new {@link Snapshot}.
+   */
+  public void Reload() {
+    final YamlConfiguration file = new YamlConfiguration();
+    try {
+      if (path.exists())
+        file.load(path);
+    } catch (final Exception e) {
+      e.printStackTrace();
+    }
+    this.file = file;
+
+    addDefaults();
+    try {
+      file.save(path);
+    } catch (final Exception e) {
+      e.printStackTrace();
+    }
+    snapshot = new Snapshot(this);
+  }
+
   public void Set(String path, Object value) {
     file.set(path, value);
+    snapshot = new Snapshot(this);
     try {
-      file.save(path);
+      file.save(this.path);
     } catch (final IOException e) {
     }
   }
@@ -80,8 +169,24 @@ public class Settings {
     list.put("Language", "en-US");
     list.put("FreezePlayer", true);
     list.put("BlockChat", true);
+    list.put("FreezeMessageInterval", 2);
     list.put("Servername", ExtraAuth.INSTANCE.getServer().getServerName());
     list.put("ReauthenticateTimeout", 5);
+    list.put("SaveInterval", 10);
+    list.put("JournalMaxSize", 512);
+    list.put("PermissionBackend", "auto");
+    list.put("PermissionCacheTTL", 30);
+    list.put("TOTPWindow", 1);
+    list.put("TOTPQRMap", true);
+    list.put("KeyHashIterations", 10000);
+    list.put("KeyHashQueueLimit", 64);
+    list.put("SessionTokenLimit", 1000);
+    list.put("SessionTokenPersist", true);
+    list.put("ThrottleBurst", 5);
+    list.put("ThrottleIPBurst", 15);
+    list.put("ThrottleRefill", 30);
+    list.put("ThrottleLockout", 60);
+    list.put("ThrottleLockoutMax", 3600);
 
     for (final Entry<String, Object> entry : list.entrySet())
       if (!file.contains(entry.getKey()))
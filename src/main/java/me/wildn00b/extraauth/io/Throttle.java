@@ -0,0 +1,140 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import me.wildn00b.extraauth.ExtraAuth;
+
+/**
+ * Limits /auth attempts per account and per IP with token buckets, checked before the key is verified. Each table is a fixed array of slots so memory doesn't grow with the
+ * number of IPs. Keys that land on the same slot share its bucket, a slot only changes hands once it has been quiet for ThrottleLockoutMax, so a
+ * colliding key can never clear someone else's lockout.
+ */
+public class Throttle {
+
+  /**
+   * A fixed-size table of buckets. A bucket is a single long, updated with compare-and-set: the upper 16 bits identify the key, the next 4 count lockouts and the low 44 bits are
+   * the time, in milliseconds since the table was created, at which the bucket is full again.
+   */
+  private static final class Buckets {
+    private static final long TIME_MASK = (1L << 44) - 1;
+    private static final int STRIKE_SHIFT = 44;
+    private static final int TAG_SHIFT = 48;
+
+    private final long epoch = System.currentTimeMillis();
+    private final int mask;
+    private final AtomicLongArray slots;
+
+    public Buckets(int size) {
+      slots = new AtomicLongArray(size);
+      mask = size - 1;
+    }
+
+    /**
+     * Takes a token.
+     * 
+     * @return 0 if there was one, otherwise how long to wait in milliseconds.
+     */
+    public long Acquire(String key, int burst, long refill, long lockout,
+        long lockoutMax) {
+      final int hash = hash(key);
+      final int index = hash & mask;
+      final long tag = (long) (hash >>> 16) << TAG_SHIFT;
+      final long now = System.currentTimeMillis() - epoch;
+      final long capacity = burst * refill;
+
+      while (true) {
+        final long old = slots.get(index);
+        long owner = old & ~((1L << TAG_SHIFT) - 1);
+        long full = old & TIME_MASK;
+        int strikes = (int) (old >>> STRIKE_SHIFT) & 0xf;
+        if (old == 0 || now - full > lockoutMax) {
+          // Unused, or quiet long enough to be forgiven, whoever had it
+          owner = tag;
+          full = now;
+          strikes = 0;
+        } else if (full < now)
+          full = now;
+
+        long wait = 0;
+        if (full + refill - now <= capacity)
+          full += refill;
+        else {
+          // The first refused attempt locks the bucket, each lockout is twice as long as the last
+          if (full - now <= capacity) {
+            full = now + capacity + Math.min(lockoutMax, lockout << strikes);
+            strikes = Math.min(strikes + 1, 15);
+          }
+          wait = full - capacity - now + refill;
+        }
+
+        if (slots.compareAndSet(index, old, owner
+            | (long) strikes << STRIKE_SHIFT | full & TIME_MASK))
+          return wait;
+      }
+    }
+
+    public void Reset(String key) {
+      final int index = hash(key) & mask;
+      final long old = slots.get(index);
+      if ((old >>> TAG_SHIFT) == (hash(key) >>> 16))
+        slots.compareAndSet(index, old, 0);
+    }
+
+    private int hash(String key) {
+      int h = key.hashCode() * 0x9e3779b9;
+      h ^= h >>> 15;
+      return h;
+    }
+  }
+
+  private final Buckets accounts = new Buckets(1024);
+  private final ExtraAuth extraauth;
+  private final Buckets ips = new Buckets(4096);
+
+  public Throttle(ExtraAuth extraauth) {
+    this.extraauth = extraauth;
+  }
+
+  /**
+   * Takes a token from both the account's and the IP's bucket. Call it for every attempt, before verifying anything.
+   * 
+   * @return 0 if the attempt may go ahead, otherwise how long to wait in milliseconds.
+   */
+  public long Acquire(String player, String IP) {
+    final Settings.Snapshot settings = extraauth.Settings.Get();
+    final long wait = accounts.Acquire(player.toLowerCase(Locale.ENGLISH),
+        settings.ThrottleBurst, settings.ThrottleRefill,
+        settings.ThrottleLockout, settings.ThrottleLockoutMax);
+    if (wait > 0 || IP == null)
+      return wait;
+    return ips.Acquire(IP, settings.ThrottleIPBurst, settings.ThrottleRefill,
+        settings.ThrottleLockout, settings.ThrottleLockoutMax);
+  }
+
+  /**
+   * Forgets the account's failed attempts, after it authenticated.
+   */
+  public void Reset(String player) {
+    accounts.Reset(player.toLowerCase(Locale.ENGLISH));
+  }
+}
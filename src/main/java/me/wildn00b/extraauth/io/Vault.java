@@ -19,40 +19,115 @@
 
 package me.wildn00b.extraauth.io;
 
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import me.wildn00b.extraauth.ExtraAuth;
-import net.milkbowl.vault.permission.Permission;
 
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.RegisteredServiceProvider;
 
+/**
+ * Permission checks for the commands. Despite the name Vault is optional, without it the checks go to Bukkit, see {@link PermissionBackend}.
+ */
 public class Vault {
 
-  private ExtraAuth extraauth;
-  private Permission permissions;
+  private static class Decision {
+    final long Expires;
+    final boolean Value;
+
+    Decision(boolean value, long expires) {
+      Value = value;
+      Expires = expires;
+    }
+  }
+
+  // Decisions per player, so slow backends aren't asked on every command
+  private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, Decision>> cache = new ConcurrentHashMap<UUID, ConcurrentHashMap<String, Decision>>();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+  private final PermissionBackend backend;
+  private final ExtraAuth extraauth;
 
+  /**
+   * Picks the backend from the PermissionBackend setting. "auto" uses Vault when it has a permission provider and Bukkit's own permissions otherwise.
+   */
   public Vault(ExtraAuth extraauth) {
     this.extraauth = extraauth;
-    if (extraauth.getServer().getPluginManager().getPlugin("Vault") == null) {
-      extraauth.Log.log(Level.SEVERE,
-          "[ExtraAuth] " + extraauth.Lang._("Vault.NotFound"));
-      extraauth.getServer().getPluginManager().disablePlugin(extraauth);
-    } else {
-      final RegisteredServiceProvider<Permission> perm = extraauth.getServer()
-          .getServicesManager().getRegistration(Permission.class);
-      if (perm == null) {
-        extraauth.Log.log(Level.SEVERE,
-            "[ExtraAuth] " + extraauth.Lang._("Vault.PermissionNotFound"));
-        extraauth.getServer().getPluginManager().disablePlugin(extraauth);
-        return;
+
+    final String wanted = extraauth.Settings.Get().PermissionBackend;
+    PermissionBackend backend = null;
+    if (!wanted.equalsIgnoreCase("bukkit")) {
+      if (extraauth.getServer().getPluginManager().getPlugin("Vault") == null)
+        extraauth.Log.log(Level.WARNING,
+            "[ExtraAuth] " + extraauth.Lang._("Vault.NotFound"));
+      else {
+        backend = VaultPermissions.Create(extraauth.getServer());
+        if (backend == null)
+          extraauth.Log.log(Level.WARNING,
+              "[ExtraAuth] " + extraauth.Lang._("Vault.PermissionNotFound"));
       }
-      permissions = perm.getProvider();
     }
+    if (backend == null)
+      backend = new BukkitPermissions();
+
+    this.backend = backend;
+    extraauth.Log.log(Level.INFO, "[ExtraAuth] Using " + backend.GetName()
+        + " permissions");
+  }
+
+  public long GetCacheHits() {
+    return cacheHits.get();
+  }
+
+  public long GetCacheMisses() {
+    return cacheMisses.get();
   }
 
+  /**
+   * Checks a permission, answering from the cache for PermissionCacheTTL after the provider was last asked.
+   */
   public boolean HasPermissions(Player player, String permission) {
-    return permissions.has(player, permission);
+    final long ttl = extraauth.Settings.Get().PermissionCacheTTL;
+    if (ttl <= 0 || !backend.ShouldCache())
+      return backend.HasPermission(player, permission);
+
+    final long now = System.currentTimeMillis();
+    ConcurrentHashMap<String, Decision> decisions = cache.get(player
+        .getUniqueId());
+    if (decisions == null) {
+      decisions = new ConcurrentHashMap<String, Decision>();
+      final ConcurrentHashMap<String, Decision> old = cache.putIfAbsent(
+          player.getUniqueId(), decisions);
+      if (old != null)
+        decisions = old;
+    }
+
+    final Decision decision = decisions.get(permission);
+    if (decision != null && decision.Expires > now) {
+      cacheHits.incrementAndGet();
+      return decision.Value;
+    }
+
+    cacheMisses.incrementAndGet();
+    final boolean value = backend.HasPermission(player, permission);
+    decisions.put(permission, new Decision(value, now + ttl));
+    return value;
+  }
+
+  /**
+   * Forgets every cached decision, used on reload.
+   */
+  public void Invalidate() {
+    cache.clear();
+  }
+
+  /**
+   * Forgets the cached decisions of a player, used when they quit.
+   */
+  public void Invalidate(Player player) {
+    cache.remove(player.getUniqueId());
   }
 
 }
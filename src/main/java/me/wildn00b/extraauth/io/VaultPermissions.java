@@ -0,0 +1,64 @@
+/*
+ * ExtraAuth - Extra authentication for bukkit, for accessing account or other plugins (which uses my API)
+ * Copyright (C) 2013 Dan Printzell
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package me.wildn00b.extraauth.io;
+
+import net.milkbowl.vault.permission.Permission;
+
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.RegisteredServiceProvider;
+
+/**
+ * Asks the permission provider registered with Vault. Only loaded when Vault is installed, since it links against Vault's classes.
+ */
+public class VaultPermissions implements PermissionBackend {
+
+  /**
+   * @return The backend, or null if Vault has no permission provider.
+   */
+  public static VaultPermissions Create(Server server) {
+    final RegisteredServiceProvider<Permission> perm = server
+        .getServicesManager().getRegistration(Permission.class);
+    if (perm == null || perm.getProvider() == null)
+      return null;
+    return new VaultPermissions(perm.getProvider());
+  }
+
+  private final Permission permissions;
+
+  private VaultPermissions(Permission permissions) {
+    this.permissions = permissions;
+  }
+
+  @Override
+  public String GetName() {
+    return "Vault (" + permissions.getName() + ")";
+  }
+
+  @Override
+  public boolean HasPermission(Player player, String permission) {
+    return permissions.has(player, permission);
+  }
+
+  @Override
+  public boolean ShouldCache() {
+    return true;
+  }
+}
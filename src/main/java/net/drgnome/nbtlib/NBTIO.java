@@ -0,0 +1,264 @@
+// Bukkit Plugin "NBTLib" by Siguza
+// The license under which this software is released can be accessed at:
+// http://creativecommons.org/licenses/by/3.0/
+
+package net.drgnome.nbtlib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * A streaming reader and writer for the NBT format that works directly on {@link Tag} objects.
+ * </p>
+ * <p>
+ * Unlike the methods in {@link NBT}, nothing in here goes through Minecraft or Craftbukkit, so it works without them on the classpath. The output is byte-compatible with Minecraft's
+ * NBTCompressedStreamTools.
+ * </p>
+ */
+public final class NBTIO {
+  private NBTIO() {
+  }
+
+  /**
+   * <p>
+   * Reads a gzip-compressed compound tag from an {@link InputStream}, like Minecraft's level and player files.
+   * </p>
+   * <p>
+   * The stream is closed afterwards.
+   * </p>
+   *
+   * @param stream
+   *          An {@link InputStream}.
+   *
+   * @return The contents of the root compound.
+   *
+   * @throws IOException
+   *           If the stream can't be read or the root tag isn't a compound.
+   */
+  public static Map<String, Tag> read(InputStream stream) throws IOException {
+    final DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(stream)));
+    try {
+      final Tag tag = readNamed(input);
+      if (tag == null || tag.getType() != NBT.COMPOUND)
+        throw new IOException("Root tag must be a compound");
+      return (Map<String, Tag>) tag.get();
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a named tag from a {@link DataInput} object. The name is discarded.
+   * </p>
+   *
+   * @param input
+   *          A {@link DataInput} object.
+   *
+   * @return The tag, or {@code null} for an end tag.
+   */
+  public static Tag readNamed(DataInput input) throws IOException {
+    final byte type = input.readByte();
+    if (type == 0)
+      return null;
+    input.readUTF();
+    return readPayload(input, type);
+  }
+
+  /**
+   * <p>
+   * Reads the payload of a tag of the given type from a {@link DataInput} object.
+   * </p>
+   *
+   * @param input
+   *          A {@link DataInput} object.
+   * @param type
+   *          The ID of the tag, see {@link NBT#getId()}.
+   *
+   * @return The tag.
+   */
+  public static Tag readPayload(DataInput input, int type) throws IOException {
+    switch (type) {
+    case 1:
+      return Tag.newByte(input.readByte());
+    case 2:
+      return Tag.newShort(input.readShort());
+    case 3:
+      return Tag.newInt(input.readInt());
+    case 4:
+      return Tag.newLong(input.readLong());
+    case 5:
+      return Tag.newFloat(input.readFloat());
+    case 6:
+      return Tag.newDouble(input.readDouble());
+    case 7: {
+      final byte[] data = new byte[input.readInt()];
+      input.readFully(data);
+      return Tag.newByteArray(data);
+    }
+    case 8:
+      return Tag.newString(input.readUTF());
+    case 9: {
+      final byte elementType = input.readByte();
+      final int length = input.readInt();
+      final List<Tag> list = new ArrayList<Tag>(length);
+      for (int i = 0; i < length; i++)
+        list.add(readPayload(input, elementType));
+      return Tag.wrapList(list);
+    }
+    case 10: {
+      final Map<String, Tag> map = new HashMap<String, Tag>();
+      byte elementType;
+      while ((elementType = input.readByte()) != 0) {
+        final String name = input.readUTF();
+        map.put(name, readPayload(input, elementType));
+      }
+      return Tag.wrapCompound(map);
+    }
+    case 11: {
+      final int[] data = new int[input.readInt()];
+      for (int i = 0; i < data.length; i++)
+        data[i] = input.readInt();
+      return Tag.newIntArray(data);
+    }
+    }
+    throw new IOException("Unknown tag type " + type);
+  }
+
+  /**
+   * <p>
+   * Writes a tag as a gzip-compressed named tag to an {@link OutputStream}.
+   * </p>
+   * <p>
+   * The stream is closed afterwards.
+   * </p>
+   *
+   * @param stream
+   *          An {@link OutputStream}.
+   * @param name
+   *          The name of the root tag.
+   * @param tag
+   *          The tag, usually a compound.
+   */
+  public static void write(OutputStream stream, String name, Tag tag)
+      throws IOException {
+    final DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new GZIPOutputStream(stream)));
+    try {
+      writeNamed(output, name, tag);
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Writes a named tag to a {@link DataOutput} object.
+   * </p>
+   *
+   * @param output
+   *          A {@link DataOutput} object.
+   * @param name
+   *          The name of the tag.
+   * @param tag
+   *          The tag.
+   */
+  public static void writeNamed(DataOutput output, String name, Tag tag)
+      throws IOException {
+    output.writeByte(typeOf(tag));
+    output.writeUTF(name);
+    writePayload(output, tag);
+  }
+
+  /**
+   * <p>
+   * Writes the payload of a tag to a {@link DataOutput} object.
+   * </p>
+   *
+   * @param output
+   *          A {@link DataOutput} object.
+   * @param tag
+   *          The tag.
+   */
+  public static void writePayload(DataOutput output, Tag tag)
+      throws IOException {
+    switch (tag.getType()) {
+    case BOOL:
+      output.writeByte(((Boolean) tag.get()).booleanValue() ? 1 : 0);
+      return;
+    case BYTE:
+      output.writeByte(((Byte) tag.get()).byteValue());
+      return;
+    case SHORT:
+      output.writeShort(((Short) tag.get()).shortValue());
+      return;
+    case INT:
+      output.writeInt(((Integer) tag.get()).intValue());
+      return;
+    case LONG:
+      output.writeLong(((Long) tag.get()).longValue());
+      return;
+    case FLOAT:
+      output.writeFloat(((Float) tag.get()).floatValue());
+      return;
+    case DOUBLE:
+      output.writeDouble(((Double) tag.get()).doubleValue());
+      return;
+    case BYTE_ARRAY: {
+      final byte[] data = (byte[]) tag.get();
+      output.writeInt(data.length);
+      output.write(data);
+      return;
+    }
+    case STRING:
+      output.writeUTF((String) tag.get());
+      return;
+    case LIST: {
+      final List<Tag> list = (List<Tag>) tag.get();
+      // Same as Minecraft: the type of the first element, or byte for an empty list
+      output.writeByte(list.isEmpty() ? NBT.BYTE.getId() : typeOf(list.get(0)));
+      output.writeInt(list.size());
+      for (final Tag t : list)
+        writePayload(output, t);
+      return;
+    }
+    case COMPOUND:
+      for (final Map.Entry<String, Tag> entry : ((Map<String, Tag>) tag.get())
+          .entrySet())
+        writeNamed(output, entry.getKey(), entry.getValue());
+      output.writeByte(NBT.END.getId());
+      return;
+    case INT_ARRAY: {
+      final int[] data = (int[]) tag.get();
+      output.writeInt(data.length);
+      for (final int i : data)
+        output.writeInt(i);
+      return;
+    }
+    case END:
+      return;
+    }
+  }
+
+  // BOOL has no tag of its own, it's stored as a byte
+  private static int typeOf(Tag tag) {
+    if (tag.getType() == NBT.BOOL)
+      return NBT.BYTE.getId();
+    return tag.getType().getId();
+  }
+}
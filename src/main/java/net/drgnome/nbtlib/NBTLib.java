@@ -9,6 +9,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import org.bukkit.Bukkit;
@@ -38,11 +40,15 @@ public class NBTLib {
    */
   public static final String _version = "#VERSION#";
 
+  private static final ConcurrentHashMap<String, Object> _cache;
+  private static final AtomicLong _cacheHits = new AtomicLong();
+  private static final AtomicLong _cacheMisses = new AtomicLong();
   private static String _craftbukkit;
   private static boolean _disabled;
   private static String _minecraft;
   static {
     _log = Logger.getLogger("Minecraft");
+    _cache = new ConcurrentHashMap<String, Object>();
     try {
       invoke("sun.reflect.Reflection", null, "getDeclaredMethod", new Class[] {
           Class.class, String[].class }, new Object[] { NBTLib.class,
@@ -61,6 +67,19 @@ public class NBTLib {
     return !_disabled;
   }
 
+  /**
+   * <p>
+   * Forgets all cached classes, constructors, fields and methods and resets the counters.
+   * </p>
+   * 
+   * @see #getCacheHits()
+   */
+  public static void clearCache() {
+    _cache.clear();
+    _cacheHits.set(0);
+    _cacheMisses.set(0);
+  }
+
   /**
    * <p>
    * Fetches the value of a field of a Craftbukkit class.
@@ -137,7 +156,7 @@ public class NBTLib {
   public static Object fetchDynamicField(String className, Object object,
       Object type) throws ClassNotFoundException, IllegalAccessException,
       NoSuchFieldException {
-    return getField(Class.forName(className), parseClass(type)).get(object);
+    return cachedField(className, type).get(object);
   }
 
   /**
@@ -189,7 +208,7 @@ public class NBTLib {
   public static Object fetchField(String className, Object object, String name)
       throws ClassNotFoundException, IllegalAccessException,
       NoSuchFieldException {
-    return getField(Class.forName(className), name).get(object);
+    return cachedField(className, name).get(object);
   }
 
   /**
@@ -244,6 +263,28 @@ public class NBTLib {
     }
   }
 
+  /**
+   * <p>
+   * Returns how many lookups done by the "fetch", "instantiate", "invoke" and "put" methods were answered from the cache.
+   * </p>
+   * 
+   * @return The number of cache hits.
+   */
+  public static long getCacheHits() {
+    return _cacheHits.get();
+  }
+
+  /**
+   * <p>
+   * Returns how many lookups done by the "fetch", "instantiate", "invoke" and "put" methods had to search the class with reflection.
+   * </p>
+   * 
+   * @return The number of cache misses.
+   */
+  public static long getCacheMisses() {
+    return _cacheMisses.get();
+  }
+
   /**
    * Returns a {@link Class} from the Craftbukkit package.
    * 
@@ -466,8 +507,7 @@ public class NBTLib {
   public static Object instantiate(String className, Object[] paramTypes,
       Object... params) throws ClassNotFoundException, IllegalAccessException,
       InstantiationException, InvocationTargetException, NoSuchMethodException {
-    return getConstructor(Class.forName(className), parseClass(paramTypes))
-        .newInstance(params);
+    return cachedConstructor(className, paramTypes).newInstance(params);
   }
 
   /**
@@ -534,8 +574,7 @@ public class NBTLib {
   public static Object invoke(String className, Object object, String name,
       Object[] paramTypes, Object... params) throws ClassNotFoundException,
       IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-    return getMethod(Class.forName(className), name, parseClass(paramTypes))
-        .invoke(object, params);
+    return cachedMethod(className, name, paramTypes).invoke(object, params);
   }
 
   /**
@@ -619,8 +658,8 @@ public class NBTLib {
       Object returnType, Object[] paramTypes, Object... params)
       throws ClassNotFoundException, IllegalAccessException,
       InvocationTargetException, NoSuchMethodException {
-    return getMethod(Class.forName(className), parseClass(returnType),
-        parseClass(paramTypes)).invoke(object, params);
+    return cachedMethod(className, returnType, paramTypes).invoke(object,
+        params);
   }
 
   /**
@@ -799,7 +838,7 @@ public class NBTLib {
   public static void putDynamicField(String className, Object object,
       Object type, Object value) throws ClassNotFoundException,
       IllegalAccessException, NoSuchFieldException {
-    getField(Class.forName(className), parseClass(type)).set(object, value);
+    cachedField(className, type).set(object, value);
   }
 
   /**
@@ -855,7 +894,7 @@ public class NBTLib {
   public static void putField(String className, Object object, String name,
       Object value) throws ClassNotFoundException, IllegalAccessException,
       NoSuchFieldException {
-    getField(Class.forName(className), name).set(object, value);
+    cachedField(className, name).set(object, value);
   }
 
   /**
@@ -887,6 +926,92 @@ public class NBTLib {
     putField(getMinecraftPackage() + className, object, name, value);
   }
 
+  // Lookups are keyed on the class name, the member name (or type) and the parameter types
+
+  private static Constructor cachedConstructor(String className,
+      Object[] paramTypes) throws ClassNotFoundException, NoSuchMethodException {
+    final String key = cacheKey("new", className, "", paramTypes);
+    Constructor c = (Constructor) lookup(key);
+    if (c == null) {
+      c = getConstructor(Class.forName(className), parseClass(paramTypes));
+      _cache.put(key, c);
+    }
+    return c;
+  }
+
+  private static Field cachedField(String className, Object type)
+      throws ClassNotFoundException, NoSuchFieldException {
+    final String key = cacheKey("typed", className, type, null);
+    Field f = (Field) lookup(key);
+    if (f == null) {
+      f = getField(Class.forName(className), parseClass(type));
+      _cache.put(key, f);
+    }
+    return f;
+  }
+
+  private static Field cachedField(String className, String name)
+      throws ClassNotFoundException, NoSuchFieldException {
+    final String key = cacheKey("field", className, name, null);
+    Field f = (Field) lookup(key);
+    if (f == null) {
+      f = getField(Class.forName(className), name);
+      _cache.put(key, f);
+    }
+    return f;
+  }
+
+  private static Method cachedMethod(String className, Object returnType,
+      Object[] paramTypes) throws ClassNotFoundException, NoSuchMethodException {
+    final String key = cacheKey("returns", className, returnType, paramTypes);
+    Method m = (Method) lookup(key);
+    if (m == null) {
+      m = getMethod(Class.forName(className), parseClass(returnType),
+          parseClass(paramTypes));
+      _cache.put(key, m);
+    }
+    return m;
+  }
+
+  private static Method cachedMethod(String className, String name,
+      Object[] paramTypes) throws ClassNotFoundException, NoSuchMethodException {
+    final String key = cacheKey("method", className, name, paramTypes);
+    Method m = (Method) lookup(key);
+    if (m == null) {
+      m = getMethod(Class.forName(className), name, parseClass(paramTypes));
+      _cache.put(key, m);
+    }
+    return m;
+  }
+
+  private static String cacheKey(String kind, String className, Object member,
+      Object[] paramTypes) {
+    final StringBuilder key = new StringBuilder(kind).append(' ')
+        .append(className).append('#').append(typeName(member));
+    if (paramTypes != null) {
+      key.append('(');
+      for (final Object o : paramTypes)
+        key.append(typeName(o)).append(',');
+      key.append(')');
+    }
+    return key.toString();
+  }
+
+  private static Object lookup(String key) {
+    final Object o = _cache.get(key);
+    if (o == null)
+      _cacheMisses.incrementAndGet();
+    else
+      _cacheHits.incrementAndGet();
+    return o;
+  }
+
+  private static String typeName(Object o) {
+    if (o instanceof Class)
+      return ((Class) o).getName();
+    return String.valueOf(o);
+  }
+
   private static void clinit() {
     _disabled = true;
     final ArrayList<Package> list = new ArrayList<Package>();
@@ -219,6 +219,15 @@ public final class Tag<T> {
     return new Tag<String>(NBT.STRING, data);
   }
 
+  // Used by NBTIO, which already knows that every element is a Tag
+  static Tag<Map<String, Tag>> wrapCompound(Map<String, Tag> data) {
+    return new Tag<Map<String, Tag>>(NBT.COMPOUND, data);
+  }
+
+  static Tag<List<Tag>> wrapList(List<Tag> data) {
+    return new Tag<List<Tag>>(NBT.LIST, data);
+  }
+
   private static Tag parse(Object o) throws ClassNotFoundException,
       IllegalAccessException, InvocationTargetException, NoSuchFieldException,
       NoSuchMethodException, NBTLibDisabledException, UnknownTagException {